@@ -0,0 +1,130 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares what a local event bus request and reply costs a country, and a page of 100 countries, sent as JSON strings
+ * against the typed codecs, plus the wire form the codecs use between cluster nodes. Run with {@code ./gradlew jmh} and
+ * read {@code gc.alloc.rate.norm} for the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+public class CountryCodecBenchmark {
+    private static final DeliveryOptions LIST = new DeliveryOptions().setCodecName(CountryListCodec.NAME);
+
+    private final CountryCodec codec = new CountryCodec();
+    private final CountryListCodec listCodec = new CountryListCodec();
+
+    private Vertx vertx;
+    private Country country;
+    private List<Country> countries;
+
+    @Setup
+    public void setup() throws Exception {
+        country = new Country("BM", "Bermuda", "Hamilton");
+        countries = IntStream.range(0, 100)
+                .mapToObj(index -> new Country(String.format("%02d", index), "Country " + index, "Capital " + index))
+                .collect(Collectors.toList());
+
+        vertx = Vertx.vertx();
+        EventBus eventBus = vertx.eventBus();
+        CountryCodec.register(eventBus);
+        registered(eventBus, "benchmark.country.json", (Message<String> message) ->
+                message.reply(Json.encode(Json.decodeValue(message.body(), Country.class))));
+        registered(eventBus, "benchmark.country", (Message<Country> message) -> message.reply(message.body()));
+        registered(eventBus, "benchmark.countries.json", (Message<String> message) ->
+                message.reply(Json.encode(Arrays.asList(Json.decodeValue(message.body(), Country[].class)))));
+        registered(eventBus, "benchmark.countries", (Message<List<Country>> message) -> message.reply(message.body(), LIST));
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Benchmark
+    public Country countryJsonString() throws Exception {
+        String reply = CountryCodecBenchmark.<String>request(handler ->
+                vertx.eventBus().request("benchmark.country.json", Json.encode(country), handler));
+        return Json.decodeValue(reply, Country.class);
+    }
+
+    @Benchmark
+    public Country countryLocalCodec() throws Exception {
+        return request(handler -> vertx.eventBus().request("benchmark.country", country, handler));
+    }
+
+    @Benchmark
+    public Country countryWireCodec() {
+        Buffer buffer = Buffer.buffer(64);
+        codec.encodeToWire(buffer, country);
+        return codec.decodeFromWire(0, buffer);
+    }
+
+    @Benchmark
+    public List<Country> listJsonString() throws Exception {
+        String reply = CountryCodecBenchmark.<String>request(handler ->
+                vertx.eventBus().request("benchmark.countries.json", Json.encode(countries), handler));
+        return Arrays.asList(Json.decodeValue(reply, Country[].class));
+    }
+
+    @Benchmark
+    public List<Country> listLocalCodec() throws Exception {
+        return request(handler -> vertx.eventBus().request("benchmark.countries", countries, LIST, handler));
+    }
+
+    @Benchmark
+    public List<Country> listWireCodec() {
+        Buffer buffer = Buffer.buffer(4096);
+        listCodec.encodeToWire(buffer, countries);
+        return listCodec.decodeFromWire(0, buffer);
+    }
+
+    private static <T> void registered(EventBus eventBus, String address, Handler<Message<T>> handler) throws Exception {
+        CompletableFuture<Void> completed = new CompletableFuture<>();
+        eventBus.consumer(address, handler).completionHandler(result -> completed.complete(null));
+        completed.get(10, TimeUnit.SECONDS);
+    }
+
+    private static <T> T request(Consumer<Handler<AsyncResult<Message<T>>>> request) throws Exception {
+        CompletableFuture<T> completed = new CompletableFuture<>();
+        request.accept(reply -> {
+            if (reply.succeeded()) {
+                completed.complete(reply.result().body());
+            } else {
+                completed.completeExceptionally(reply.cause());
+            }
+        });
+        return completed.get(10, TimeUnit.SECONDS);
+    }
+}
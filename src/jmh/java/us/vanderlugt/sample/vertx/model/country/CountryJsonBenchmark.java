@@ -0,0 +1,77 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures mapping a result set row to a country and the Jackson encoding and decoding of a country and of a page of
+ * 100 countries, each direction on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountryJsonBenchmark {
+    private JsonObject row;
+    private Country country;
+    private List<Country> countries;
+    private Buffer countryJson;
+    private Buffer countriesJson;
+
+    @Setup
+    public void setup() {
+        row = new JsonObject()
+                .put("ID", "BM")
+                .put("NAME", "Bermuda")
+                .put("CAPITAL", "Hamilton");
+        country = new Country("BM", "Bermuda", "Hamilton");
+        countries = IntStream.range(0, 100)
+                .mapToObj(index -> new Country(String.format("%02d", index), "Country " + index, "Capital " + index))
+                .collect(Collectors.toList());
+        countryJson = Json.encodeToBuffer(country);
+        countriesJson = Json.encodeToBuffer(countries);
+    }
+
+    @Benchmark
+    public Country mapRow() {
+        return Country.map(row);
+    }
+
+    @Benchmark
+    public String encodeCountry() {
+        return Json.encode(country);
+    }
+
+    @Benchmark
+    public Country decodeCountry() {
+        return Json.decodeValue(countryJson, Country.class);
+    }
+
+    @Benchmark
+    public String encodeList() {
+        return Json.encode(countries);
+    }
+
+    @Benchmark
+    public Country[] decodeList() {
+        return Json.decodeValue(countriesJson, Country[].class);
+    }
+}
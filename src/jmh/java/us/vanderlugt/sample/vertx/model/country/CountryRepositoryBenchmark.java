@@ -0,0 +1,97 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.jdbc.JDBCClient;
+import liquibase.Liquibase;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import us.vanderlugt.sample.vertx.model.ConnectionPool;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures full repository round trips, from the call through the JDBC client and its worker threads to the completed
+ * future, against an in-memory H2 database migrated with the application's changelog and seeded with 100 countries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+public class CountryRepositoryBenchmark {
+    private Vertx vertx;
+    private ConnectionPool pool;
+    private CountryRepository repository;
+
+    @Setup
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        pool = ConnectionPool.create(new JsonObject()
+                .put("jdbc.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1"));
+        try (Connection connection = pool.dataSource().getConnection()) {
+            new Liquibase("db/changelog-master.yml", new ClassLoaderResourceAccessor(), new JdbcConnection(connection))
+                    .update("");
+        }
+        repository = new CountryRepository(JDBCClient.create(vertx, pool.dataSource()), new SimpleMeterRegistry());
+        List<Country> countries = IntStream.range(0, 100)
+                .mapToObj(index -> new Country(new String(new char[]{(char) ('Q' + index / 26), (char) ('A' + index % 26)}),
+                        "Country " + index, "Capital " + index))
+                .collect(Collectors.toList());
+        await(repository.createCountries(countries));
+        await(repository.createCountry(new Country("BM", "Bermuda", "Hamilton")));
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close();
+        pool.close();
+    }
+
+    @Benchmark
+    public Country getCountry() throws Exception {
+        return await(repository.getCountry("BM"));
+    }
+
+    @Benchmark
+    public CountryPage searchCountriesPage() throws Exception {
+        return await(repository.searchCountries(CountryFilter.NONE, 100, null));
+    }
+
+    @Benchmark
+    public Country createAndDeleteCountry() throws Exception {
+        await(repository.createCountry(new Country("ZZ", "Benchmark", "Capital")));
+        return await(repository.deleteCountry("ZZ"));
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        CompletableFuture<T> completed = new CompletableFuture<>();
+        future.setHandler(result -> {
+            if (result.succeeded()) {
+                completed.complete(result.result());
+            } else {
+                completed.completeExceptionally(result.cause());
+            }
+        });
+        return completed.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,61 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures type-ahead lookups and incremental updates of the suggest index holding every two letter country ID.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountrySuggestBenchmark {
+    private final CountrySuggestIndex index = new CountrySuggestIndex();
+    private Country country;
+    private Country renamed;
+
+    @Setup
+    public void setup() {
+        index.load(IntStream.range(0, 26 * 26)
+                .mapToObj(number -> {
+                    String id = new String(new char[]{(char) ('A' + number / 26), (char) ('A' + number % 26)});
+                    return new Country(id, "Country " + id, "Capital " + id);
+                })
+                .collect(Collectors.toList()));
+        country = new Country("BM", "Bermuda", "Hamilton");
+        renamed = new Country("BM", "Bermuda Islands", "Hamilton");
+    }
+
+    @Benchmark
+    public List<Country> suggest() {
+        return index.suggest("country b", 10);
+    }
+
+    @Benchmark
+    public List<Country> suggestNoMatch() {
+        return index.suggest("x", 10);
+    }
+
+    @Benchmark
+    public CountrySuggestIndex update() {
+        index.put(country);
+        index.put(renamed);
+        return index;
+    }
+}
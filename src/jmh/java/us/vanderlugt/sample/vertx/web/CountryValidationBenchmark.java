@@ -0,0 +1,45 @@
+package us.vanderlugt.sample.vertx.web;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.web.api.validation.ValidationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import us.vanderlugt.sample.vertx.model.country.Country;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decoding and validating a create request body, for a valid country and for one rejected by the ID pattern.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountryValidationBenchmark {
+    private final Buffer valid = Buffer.buffer("{\"id\":\"BM\",\"name\":\"Bermuda\",\"capital\":\"Hamilton\"}");
+    private final Buffer invalid = Buffer.buffer("{\"id\":\"bm\",\"name\":\"Bermuda\",\"capital\":\"Hamilton\"}");
+
+    @Benchmark
+    public Country validCountry() throws ValidationException {
+        return CountryRouter.decodeCountry(valid, true);
+    }
+
+    @Benchmark
+    public ValidationException invalidCountry() {
+        try {
+            CountryRouter.decodeCountry(invalid, true);
+            throw new IllegalStateException("Country with a lower case ID passed validation");
+        } catch (ValidationException exception) {
+            return exception;
+        }
+    }
+}
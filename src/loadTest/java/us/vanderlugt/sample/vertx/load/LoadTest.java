@@ -0,0 +1,254 @@
+package us.vanderlugt.sample.vertx.load;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import us.vanderlugt.sample.vertx.MainVerticle;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Starts {@link MainVerticle} against a temporary H2 database and drives mixed CRUD traffic at it with a fixed number
+ * of concurrent clients, each sending its next request as soon as the previous response arrived.
+ *
+ * <p>Every country ID from {@code AA} to {@code ZZ} is created before the run, reads get a random country and writes
+ * create, update or delete one, so 404 and 409 responses are expected and only 5xx responses and connection failures
+ * count as errors. Latencies recorded after the warm up are written to the report as throughput and HdrHistogram
+ * percentiles per operation, followed by the full percentile distribution of all requests.
+ */
+@Slf4j
+public class LoadTest {
+    private static final String[] WRITES = {"create", "update", "delete"};
+
+    private final Vertx vertx;
+    private final WebClient client;
+    private final HttpVersion protocol;
+    private final int concurrency;
+    private final double readRatio;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final Map<String, Histogram> latencies = new LinkedHashMap<>();
+    private final Map<String, Long> errors = new LinkedHashMap<>();
+    private final Histogram total = new Histogram(3);
+
+    private long recordingStart;
+    private long recordingEnd;
+    private int running;
+
+    LoadTest(Vertx vertx, int port, HttpVersion protocol, int concurrency, double readRatio, long warmupSeconds,
+             long durationSeconds) {
+        this.vertx = vertx;
+        this.client = WebClient.create(vertx, new WebClientOptions()
+                .setDefaultHost("localhost")
+                .setDefaultPort(port)
+                .setProtocolVersion(protocol)
+                .setHttp2ClearTextUpgrade(false)
+                .setMaxPoolSize(concurrency));
+        this.protocol = protocol;
+        this.concurrency = concurrency;
+        this.readRatio = readRatio;
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+        for (String operation : new String[]{"get", "create", "update", "delete"}) {
+            latencies.put(operation, new Histogram(3));
+            errors.put(operation, 0L);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final HttpVersion protocol = Boolean.getBoolean("load.http2") ? HttpVersion.HTTP_2 : HttpVersion.HTTP_1_1;
+        final int concurrency = Integer.getInteger("load.concurrency", 32);
+        final double readRatio = Double.parseDouble(System.getProperty("load.read-ratio", "0.9"));
+        final long warmup = Long.getLong("load.warmup", 5);
+        final long duration = Long.getLong("load.duration", 30);
+        final Path report = Paths.get(System.getProperty("load.report", "build/reports/load-test/report.txt"));
+        final Path database = Files.createTempDirectory("country-load-test");
+        final int port = freePort();
+
+        Vertx server = Vertx.vertx();
+        Vertx driver = Vertx.vertx();
+        try {
+            log.info("Starting application on port {} with database in {}", port, database);
+            await(Future.<String>future(promise -> server.deployVerticle(MainVerticle::new, new DeploymentOptions()
+                    .setConfig(new JsonObject()
+                            .put("http.port", port)
+                            .put("jdbc.url", "jdbc:h2:" + database.resolve("country"))), promise)));
+
+            LoadTest test = new LoadTest(driver, port, protocol, concurrency, readRatio, warmup, duration);
+            await(test.seed());
+            log.info("Running {} {} clients, {} reads, {}s warm up and {}s measured",
+                    concurrency, protocol, readRatio, warmup, duration);
+            await(test.run());
+
+            Files.createDirectories(report.toAbsolutePath().getParent());
+            try (PrintStream out = new PrintStream(Files.newOutputStream(report), true, "UTF-8")) {
+                test.summary(out);
+                test.distribution(out);
+            }
+            test.summary(System.out);
+            log.info("Report written to {}", report.toAbsolutePath());
+        } finally {
+            await(Future.<Void>future(driver::close));
+            await(Future.<Void>future(server::close));
+            delete(database);
+        }
+    }
+
+    /**
+     * Creates every two letter country ID in one batch.
+     */
+    Future<Void> seed() {
+        JsonArray countries = new JsonArray();
+        for (char first = 'A'; first <= 'Z'; first++) {
+            for (char second = 'A'; second <= 'Z'; second++) {
+                countries.add(country(new String(new char[]{first, second})));
+            }
+        }
+        return Future.<HttpResponse<Buffer>>future(promise -> client.post("/api/country/batch").sendJson(countries, promise))
+                .compose(response -> response.statusCode() == 200 ?
+                        Future.<Void>succeededFuture() :
+                        Future.<Void>failedFuture("Seeding countries failed with " + response.statusCode()));
+    }
+
+    /**
+     * Runs the clients on the driver's event loop until the warm up and the measured duration have passed.
+     */
+    Future<Void> run() {
+        Promise<Void> done = Promise.promise();
+        vertx.runOnContext(start -> {
+            long now = System.nanoTime();
+            recordingStart = now + warmupNanos;
+            recordingEnd = recordingStart + durationNanos;
+            running = concurrency;
+            for (int index = 0; index < concurrency; index++) {
+                next(done);
+            }
+        });
+        return done.future();
+    }
+
+    private void next(Promise<Void> done) {
+        final long start = System.nanoTime();
+        if (start >= recordingEnd) {
+            if (--running == 0) {
+                done.complete();
+            }
+            return;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String id = new String(new char[]{(char) ('A' + random.nextInt(26)), (char) ('A' + random.nextInt(26))});
+        String operation = random.nextDouble() < readRatio ? "get" : WRITES[random.nextInt(WRITES.length)];
+        Promise<HttpResponse<Buffer>> response = Promise.promise();
+        switch (operation) {
+            case "create":
+                client.post("/api/country").sendJson(country(id), response);
+                break;
+            case "update":
+                client.put("/api/country/" + id).sendJson(country(id).put("name", "Updated " + start), response);
+                break;
+            case "delete":
+                client.delete("/api/country/" + id).send(response);
+                break;
+            default:
+                client.get("/api/country/" + id).send(response);
+        }
+        response.future().setHandler(result -> {
+            record(operation, start, result);
+            next(done);
+        });
+    }
+
+    private void record(String operation, long start, AsyncResult<HttpResponse<Buffer>> result) {
+        if (start < recordingStart) {
+            return;
+        }
+        long latency = System.nanoTime() - start;
+        latencies.get(operation).recordValue(latency);
+        total.recordValue(latency);
+        if (result.failed() || result.result().statusCode() >= 500) {
+            errors.merge(operation, 1L, Long::sum);
+        }
+    }
+
+    void summary(PrintStream out) {
+        double seconds = durationNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        out.printf("%s, concurrency %d, read ratio %.2f, measured %.0fs%n", protocol, concurrency, readRatio, seconds);
+        out.printf("Throughput %.1f requests/s%n%n", total.getTotalCount() / seconds);
+        out.printf("%-8s %10s %8s %10s %10s %10s %10s%n", "", "requests", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        latencies.forEach((operation, histogram) -> row(out, operation, histogram, errors.get(operation)));
+        row(out, "all", total, errors.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    void distribution(PrintStream out) {
+        out.printf("%nLatency distribution of all requests in milliseconds%n");
+        total.outputPercentileDistribution(out, 1_000_000.0);
+    }
+
+    private static void row(PrintStream out, String name, Histogram histogram, long errors) {
+        out.printf("%-8s %10d %8d %10.3f %10.3f %10.3f %10.3f%n", name, histogram.getTotalCount(), errors,
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static JsonObject country(String id) {
+        return new JsonObject()
+                .put("id", id)
+                .put("name", "Country " + id)
+                .put("capital", "Capital " + id);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        CompletableFuture<T> completed = new CompletableFuture<>();
+        future.setHandler(result -> {
+            if (result.succeeded()) {
+                completed.complete(result.result());
+            } else {
+                completed.completeExceptionally(result.cause());
+            }
+        });
+        return completed.get(5, TimeUnit.MINUTES);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -5,17 +5,31 @@ import lombok.extern.slf4j.Slf4j;
 import us.vanderlugt.sample.vertx.model.RepositoryVerticle;
 import us.vanderlugt.sample.vertx.web.WebVerticle;
 
+import java.util.Arrays;
 import java.util.function.Supplier;
 
 import static io.vertx.core.CompositeFuture.all;
 
+/**
+ * Deploys the tiers selected by {@code node.role}: {@code all} runs both in this JVM, {@code web} only the HTTP tier and
+ * {@code repository} only the database tier. Started with {@code -cluster} the tiers of different nodes talk over the
+ * clustered event bus, so web and repository nodes can be scaled separately.
+ */
 @Slf4j
 public class MainVerticle extends AbstractVerticle {
     @Override
     public void start(Promise<Void> start) {
-        log.debug("Starting main verticle");
-        all(deploy(RepositoryVerticle::new),
-                deploy(WebVerticle::new))
+        String role = config().getString("node.role", "all");
+        log.debug("Starting main verticle, role = {}, clustered = {}", role, vertx.isClustered());
+        if (!Arrays.asList("all", "web", "repository").contains(role)) {
+            start.fail(new IllegalArgumentException("Unknown node.role " + role + ", expected all, web or repository"));
+            return;
+        }
+        boolean web = !"repository".equals(role);
+        boolean repository = !"web".equals(role);
+        all(repository ? deploy(RepositoryVerticle::new, 1) : Future.succeededFuture(),
+                web ? deploy(WebVerticle::new, config().getInteger("http.instances", Runtime.getRuntime().availableProcessors())) :
+                        Future.succeededFuture())
                 .setHandler(async -> {
                     if (async.succeeded()) {
                         log.debug("Main verticle start complete");
@@ -27,10 +41,11 @@ public class MainVerticle extends AbstractVerticle {
                 });
     }
 
-    private Future<String> deploy(Supplier<Verticle> supplier) {
+    private Future<String> deploy(Supplier<Verticle> supplier, int instances) {
         final Promise<String> promise = Promise.promise();
         final DeploymentOptions options = new DeploymentOptions()
-                .setConfig(config());
+                .setConfig(config())
+                .setInstances(instances);
         vertx.deployVerticle(supplier, options, promise);
 
         return promise.future();
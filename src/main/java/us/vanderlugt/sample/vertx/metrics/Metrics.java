@@ -0,0 +1,65 @@
+package us.vanderlugt.sample.vertx.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.shareddata.Shareable;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Locale;
+
+/**
+ * Meter registry shared by every verticle of a Vert.x instance and the timers recorded around event bus requests.
+ */
+public final class Metrics {
+    private static final String REGISTRY = "us.vanderlugt.metrics";
+
+    private Metrics() {
+    }
+
+    public static PrometheusMeterRegistry registry(Vertx vertx) {
+        return vertx.sharedData()
+                .<String, SharedRegistry>getLocalMap(REGISTRY)
+                .computeIfAbsent(REGISTRY, key -> new SharedRegistry(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT)))
+                .registry;
+    }
+
+    /**
+     * Wraps a reply handler to record the request/reply latency of an address, tagged with the outcome so failures
+     * and timeouts can be told apart.
+     */
+    public static <T> Handler<AsyncResult<Message<T>>> timed(MeterRegistry registry, String address,
+                                                              Handler<AsyncResult<Message<T>>> handler) {
+        Timer.Sample sample = Timer.start(registry);
+        return result -> {
+            sample.stop(Timer.builder("eventbus.requests")
+                    .description("Event bus request/reply latency by address")
+                    .tag("address", address)
+                    .tag("outcome", outcome(result))
+                    .publishPercentileHistogram()
+                    .register(registry));
+            handler.handle(result);
+        };
+    }
+
+    public static String outcome(AsyncResult<?> result) {
+        if (result.succeeded()) {
+            return "success";
+        } else if (result.cause() instanceof ReplyException) {
+            return ((ReplyException) result.cause()).failureType().name().toLowerCase(Locale.ROOT);
+        } else {
+            return "failure";
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class SharedRegistry implements Shareable {
+        private final PrometheusMeterRegistry registry;
+    }
+}
@@ -0,0 +1,237 @@
+package us.vanderlugt.sample.vertx.model;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.jdbc.spi.DataSourceProvider;
+import io.vertx.ext.jdbc.spi.impl.C3P0DataSourceProvider;
+import io.vertx.ext.jdbc.spi.impl.HikariCPDataSourceProvider;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.logging.Logger;
+
+/**
+ * JDBC connection pool built from the {@code jdbc.*} configuration with either the C3P0 or the Hikari provider.
+ *
+ * <p>The data source handed to the JDBC client times every connection acquisition, {@link #stats()} combines those
+ * timings with the provider's active, idle and waiting connection counts. Meters are tagged with the pool's role,
+ * {@code primary} or {@code replica}, so both pools of a read/write split can be told apart.
+ */
+@Slf4j
+public class ConnectionPool {
+    private final String provider;
+    private final String role;
+    private final int maximumSize;
+    private final DataSource pooled;
+    private final DataSource timed;
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong acquireNanos = new AtomicLong();
+    private final LongAccumulator acquireMaxNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLong acquireFailures = new AtomicLong();
+
+    private ConnectionPool(String provider, String role, int maximumSize, DataSource pooled) {
+        this.provider = provider;
+        this.role = role;
+        this.maximumSize = maximumSize;
+        this.pooled = pooled;
+        this.timed = new TimedDataSource();
+    }
+
+    public static ConnectionPool create(JsonObject config) throws SQLException {
+        return create(config, "primary");
+    }
+
+    public static ConnectionPool create(JsonObject config, String role) throws SQLException {
+        String provider = config.getString("jdbc.provider", "c3p0");
+        String url = config.getString("jdbc.url", "jdbc:h2:./database/test");
+        String driverClass = config.getString("jdbc.driver_class", "org.h2.Driver");
+        int maximumSize = config.getInteger("jdbc.pool.max-size", 15);
+        int minimumIdle = config.getInteger("jdbc.pool.min-idle", 3);
+        long acquireTimeout = config.getLong("jdbc.pool.acquire-timeout", 30_000L);
+        int statementCacheSize = config.getInteger("jdbc.statement-cache.size", 100);
+        log.debug("Creating {} {} connection pool for {}, max size = {}, min idle = {}", role, provider, url, maximumSize, minimumIdle);
+
+        if ("hikari".equals(provider)) {
+            DataSourceProvider hikari = new HikariCPDataSourceProvider();
+            return new ConnectionPool(provider, role, maximumSize, hikari.getDataSource(new JsonObject()
+                    .put("jdbcUrl", url)
+                    .put("driverClassName", driverClass)
+                    .put("maximumPoolSize", maximumSize)
+                    .put("minimumIdle", minimumIdle)
+                    .put("connectionTimeout", acquireTimeout)
+                    .put("poolName", "country-" + role)
+                    .put("datasource", config.getJsonObject("jdbc.datasource", new JsonObject()))));
+        } else if ("c3p0".equals(provider)) {
+            DataSourceProvider c3p0 = new C3P0DataSourceProvider();
+            ComboPooledDataSource dataSource = (ComboPooledDataSource) c3p0.getDataSource(new JsonObject()
+                    .put("url", url)
+                    .put("driver_class", driverClass)
+                    .put("max_pool_size", maximumSize)
+                    .put("min_pool_size", minimumIdle)
+                    .put("initial_pool_size", minimumIdle)
+                    .put("max_statements_per_connection", statementCacheSize));
+            dataSource.setCheckoutTimeout(Math.toIntExact(acquireTimeout));
+            return new ConnectionPool(provider, role, maximumSize, dataSource);
+        } else {
+            throw new IllegalArgumentException("Unknown jdbc.provider " + provider + ", expected c3p0 or hikari");
+        }
+    }
+
+    /**
+     * The pooled data source, wrapped to time connection acquisition.
+     */
+    public DataSource dataSource() {
+        return timed;
+    }
+
+    public JsonObject stats() {
+        long count = acquired.get();
+        JsonObject stats = new JsonObject()
+                .put("provider", provider)
+                .put("role", role)
+                .put("maximumSize", maximumSize)
+                .put("acquired", count)
+                .put("acquireFailures", acquireFailures.get())
+                .put("acquireTimeAverage", count == 0 ? 0.0 : toMillis(acquireNanos.get() / (double) count))
+                .put("acquireTimeMaximum", toMillis(acquireMaxNanos.get()));
+        try {
+            if (pooled instanceof HikariDataSource) {
+                HikariPoolMXBean pool = ((HikariDataSource) pooled).getHikariPoolMXBean();
+                if (pool != null) {
+                    stats.put("active", pool.getActiveConnections())
+                            .put("idle", pool.getIdleConnections())
+                            .put("waiting", pool.getThreadsAwaitingConnection());
+                }
+            } else if (pooled instanceof ComboPooledDataSource) {
+                ComboPooledDataSource pool = (ComboPooledDataSource) pooled;
+                stats.put("active", pool.getNumBusyConnectionsDefaultUser())
+                        .put("idle", pool.getNumIdleConnectionsDefaultUser())
+                        .put("waiting", pool.getNumThreadsAwaitingCheckoutDefaultUser());
+            }
+        } catch (SQLException exception) {
+            log.warn("Reading connection pool gauges failed", exception);
+        }
+        return stats;
+    }
+
+    /**
+     * Registers gauges for the active, idle and waiting connections and a timer for connection acquisition.
+     */
+    public void bindTo(MeterRegistry registry) {
+        Tags tags = Tags.of("pool", provider, "role", role);
+        for (String state : new String[]{"active", "idle", "waiting"}) {
+            Gauge.builder("jdbc.pool.connections", this, pool -> pool.stats().getInteger(state, 0))
+                    .description("Connections by state, waiting counts threads blocked on acquisition")
+                    .tags(tags)
+                    .tag("state", state)
+                    .register(registry);
+        }
+        Gauge.builder("jdbc.pool.max", this, pool -> pool.maximumSize)
+                .tags(tags)
+                .register(registry);
+        FunctionTimer.builder("jdbc.pool.acquire", this, pool -> pool.acquired.get(), pool -> pool.acquireNanos.get(), TimeUnit.NANOSECONDS)
+                .description("Time spent waiting for a pooled connection")
+                .tags(tags)
+                .register(registry);
+        FunctionCounter.builder("jdbc.pool.acquire.failures", acquireFailures, AtomicLong::get)
+                .tags(tags)
+                .register(registry);
+    }
+
+    public void close() {
+        log.debug("Closing {} {} connection pool", role, provider);
+        if (pooled instanceof HikariDataSource) {
+            ((HikariDataSource) pooled).close();
+        } else if (pooled instanceof ComboPooledDataSource) {
+            ((ComboPooledDataSource) pooled).close();
+        }
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private class TimedDataSource implements DataSource {
+        @Override
+        public Connection getConnection() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                Connection connection = pooled.getConnection();
+                record(start);
+                return connection;
+            } catch (SQLException exception) {
+                acquireFailures.incrementAndGet();
+                throw exception;
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            long start = System.nanoTime();
+            try {
+                Connection connection = pooled.getConnection(username, password);
+                record(start);
+                return connection;
+            } catch (SQLException exception) {
+                acquireFailures.incrementAndGet();
+                throw exception;
+            }
+        }
+
+        private void record(long start) {
+            long elapsed = System.nanoTime() - start;
+            acquired.incrementAndGet();
+            acquireNanos.addAndGet(elapsed);
+            acquireMaxNanos.accumulate(elapsed);
+        }
+
+        @Override
+        public PrintWriter getLogWriter() throws SQLException {
+            return pooled.getLogWriter();
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) throws SQLException {
+            pooled.setLogWriter(out);
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) throws SQLException {
+            pooled.setLoginTimeout(seconds);
+        }
+
+        @Override
+        public int getLoginTimeout() throws SQLException {
+            return pooled.getLoginTimeout();
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            return pooled.getParentLogger();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> type) throws SQLException {
+            return type.isInstance(pooled) ? type.cast(pooled) : pooled.unwrap(type);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> type) throws SQLException {
+            return type.isInstance(pooled) || pooled.isWrapperFor(type);
+        }
+    }
+}
@@ -1,62 +1,238 @@
 package us.vanderlugt.sample.vertx.model;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.vertx.core.*;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Lock;
 import io.vertx.ext.jdbc.JDBCClient;
 import io.vertx.ext.sql.SQLConnection;
-import liquibase.Liquibase;
-import liquibase.database.jvm.JdbcConnection;
 import liquibase.exception.LiquibaseException;
-import liquibase.resource.ClassLoaderResourceAccessor;
 import lombok.extern.slf4j.Slf4j;
+import us.vanderlugt.sample.vertx.metrics.Metrics;
+import us.vanderlugt.sample.vertx.model.country.Country;
+import us.vanderlugt.sample.vertx.model.country.CountryCache;
+import us.vanderlugt.sample.vertx.model.country.CountryFilter;
+import us.vanderlugt.sample.vertx.model.country.CountryInsertBatcher;
+import us.vanderlugt.sample.vertx.model.country.CountryRepository;
+import us.vanderlugt.sample.vertx.model.country.CountrySearchCache;
+import us.vanderlugt.sample.vertx.model.country.CountrySuggestIndex;
 import us.vanderlugt.sample.vertx.model.country.CountryVerticle;
 
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 import static io.vertx.core.Future.future;
 
 @Slf4j
 public class RepositoryVerticle extends AbstractVerticle {
+    private static final String REPOSITORY_LOCK = "us.vanderlugt.repository";
+
+    private Lock repositoryLock;
+    private ConnectionPool pool;
+    private ConnectionPool readPool;
+
     @Override
     public void start(Promise<Void> start) {
         log.debug("Starting Repository verticle");
-        final JDBCClient client = JDBCClient.createShared(vertx, new JsonObject()
-                .put("url", config().getValue("jdbc.url", "jdbc:h2:./database/test"))
-                .put("driver_class", config().getValue("jdbc.driver_class", "org.h2.Driver")));
-
-        future(client::getConnection)
-                .compose(connection -> {
-                    Promise<Void> promise = Promise.promise();
-                    vertx.executeBlocking(runLiquibaseMigration(connection), promise);
-                    return promise.future();
+        final CountryCache cache = new CountryCache(
+                config().getInteger("country.cache.size", 1000),
+                config().getLong("country.cache.ttl", 600_000L));
+        final CountrySearchCache searchCache = new CountrySearchCache();
+        final CountrySuggestIndex suggestIndex = new CountrySuggestIndex();
+        final MeterRegistry registry = Metrics.registry(vertx);
+        final SingleFlight<String, Country> gets = new SingleFlight<>();
+        final SingleFlight<String, List<Country>> searches = new SingleFlight<>();
+        gets.bindTo(registry, "getCountry");
+        searches.bindTo(registry, "searchCountries");
+
+        long started = System.nanoTime();
+        phase("repository-lock", registry, this::acquireRepositoryLock)
+                .compose(lock -> {
+                    repositoryLock = lock;
+                    return phase("connection-pool", registry,
+                            () -> Future.<ConnectionPool>future(promise -> vertx.executeBlocking(createConnectionPool(), promise)));
                 })
-                .compose(r -> {
-                    return deploy(() -> new CountryVerticle(client));
+                .compose(created -> {
+                    pool = created;
+                    pool.bindTo(registry);
+                    vertx.eventBus().consumer("us.vanderlugt.jdbc.pool.stats", message -> message.reply(poolStats()));
+                    JDBCClient client = JDBCClient.create(vertx, pool.dataSource());
+                    return phase("migration", registry, () -> future(client::getConnection)
+                            .compose(connection -> Future.<Boolean>future(promise -> vertx.executeBlocking(runMigration(connection), promise))))
+                            .compose(migrated -> phase("suggest-index", registry, () -> new CountryRepository(client, registry)
+                                    .searchCountries(CountryFilter.NONE)
+                                    .map(countries -> {
+                                        suggestIndex.load(countries);
+                                        return countries.size();
+                                    })))
+                            .compose(loaded -> phase("read-pool", registry,
+                                    () -> Future.<ConnectionPool>future(promise -> vertx.executeBlocking(createReadConnectionPool(), promise))))
+                            .compose(replica -> {
+                                JDBCClient readClient = client;
+                                if (replica != null) {
+                                    readPool = replica;
+                                    readPool.bindTo(registry);
+                                    readClient = JDBCClient.create(vertx, readPool.dataSource());
+                                }
+                                JDBCClient reads = readClient;
+                                CountryInsertBatcher batcher = insertBatcher(client, registry);
+                                return phase("country-verticles", registry, () -> deploy(() -> new CountryVerticle(client, reads, cache,
+                                                searchCache, suggestIndex, gets, searches, batcher, registry),
+                                        config().getInteger("country.instances", Runtime.getRuntime().availableProcessors())));
+                            });
                 })
-                .compose(id -> Future.<Void>succeededFuture())
-                .setHandler(start);
+                .compose(id -> {
+                    log.info("Repository verticle started in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                    return Future.<Void>succeededFuture();
+                })
+                .setHandler(result -> {
+                    if (result.failed()) {
+                        close();
+                    }
+                    start.handle(result);
+                });
+    }
+
+    @Override
+    public void stop() {
+        close();
+    }
+
+    /**
+     * Releases whatever a start acquired, also after a failed start since Vert.x does not stop a verticle that failed
+     * to start.
+     */
+    private void close() {
+        releaseRepositoryLock();
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+        if (readPool != null) {
+            readPool.close();
+            readPool = null;
+        }
+    }
+
+    /**
+     * Takes the cluster wide repository lock. The country caches, search cache and suggest index only see the writes of
+     * their own node, so a second repository node would serve stale countries and fails to start instead.
+     */
+    private Future<Lock> acquireRepositoryLock() {
+        long timeout = config().getLong("node.repository.lock-timeout", 10_000L);
+        return Future.<Lock>future(promise -> vertx.sharedData().getLockWithTimeout(REPOSITORY_LOCK, timeout, promise))
+                .recover(failure -> Future.failedFuture(new IllegalStateException("Another repository node is running, " +
+                        "its caches and this node's would not see each other's writes, run one repository node per database", failure)));
+    }
+
+    private void releaseRepositoryLock() {
+        if (repositoryLock != null) {
+            repositoryLock.release();
+            repositoryLock = null;
+        }
+    }
+
+    private JsonObject poolStats() {
+        JsonObject stats = pool.stats();
+        if (readPool != null) {
+            stats.put("replica", readPool.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Group commit of single inserts, disabled unless {@code country.insert.batch.window} is positive.
+     */
+    private CountryInsertBatcher insertBatcher(JDBCClient client, MeterRegistry registry) {
+        long window = config().getLong("country.insert.batch.window", 0L);
+        if (window <= 0) {
+            return null;
+        }
+        log.debug("Batching inserts within {} ms", window);
+        return new CountryInsertBatcher(vertx, new CountryRepository(client, registry), window,
+                config().getInteger("country.insert.batch.max-size", 100), registry);
     }
 
-    private Handler<Promise<Void>> runLiquibaseMigration(SQLConnection connection) {
+    private Handler<Promise<ConnectionPool>> createConnectionPool() {
         return blockingPromise -> {
             try {
-                log.debug("Running liquibase migration");
-                new Liquibase("db/changelog-master.yml", //todo external property
-                        new ClassLoaderResourceAccessor(),
-                        new JdbcConnection(connection.unwrap()))
-                        .update("");
+                blockingPromise.complete(ConnectionPool.create(config()));
+            } catch (SQLException exception) {
+                blockingPromise.fail(exception);
+            }
+        };
+    }
+
+    /**
+     * Read replica pool configured by the {@code jdbc.read.*} keys, which override the matching {@code jdbc.*} keys of
+     * the primary, or {@code null} without a {@code jdbc.read.url} so reads stay on the primary.
+     */
+    private Handler<Promise<ConnectionPool>> createReadConnectionPool() {
+        return blockingPromise -> {
+            if (!config().containsKey("jdbc.read.url")) {
                 blockingPromise.complete();
-            } catch (LiquibaseException exception) {
+                return;
+            }
+            JsonObject replica = config().copy();
+            config().fieldNames().stream()
+                    .filter(key -> key.startsWith("jdbc.read."))
+                    .forEach(key -> replica.put("jdbc." + key.substring("jdbc.read.".length()), config().getValue(key)));
+            try {
+                blockingPromise.complete(ConnectionPool.create(replica, "replica"));
+            } catch (SQLException exception) {
                 blockingPromise.fail(exception);
             }
         };
     }
 
-    private Future<String> deploy(Supplier<Verticle> supplier) {
+    /**
+     * Migrates the schema as selected by {@code jdbc.migration}, {@code update} or {@code checksum}, and returns the
+     * connection to the pool.
+     */
+    private Handler<Promise<Boolean>> runMigration(SQLConnection connection) {
+        return blockingPromise -> {
+            try {
+                boolean migrated = new SchemaMigration("db/changelog-master.yml", //todo external property
+                        config().getString("jdbc.migration", "update"))
+                        .migrate(connection.unwrap());
+                log.debug(migrated ? "Schema migrated" : "Schema current, migration skipped");
+                blockingPromise.complete(migrated);
+            } catch (LiquibaseException | SQLException | RuntimeException exception) {
+                blockingPromise.fail(exception);
+            } finally {
+                connection.close();
+            }
+        };
+    }
+
+    /**
+     * Runs a startup step, logging and recording how long it took under {@code startup.phase}.
+     */
+    private <T> Future<T> phase(String name, MeterRegistry registry, Supplier<Future<T>> step) {
+        Timer.Sample sample = Timer.start(registry);
+        return step.get().map(result -> {
+            long nanos = sample.stop(Timer.builder("startup.phase")
+                    .description("Time spent in each repository startup phase")
+                    .tag("phase", name)
+                    .register(registry));
+            log.info("Startup phase {} took {} ms", name, TimeUnit.NANOSECONDS.toMillis(nanos));
+            return result;
+        });
+    }
+
+    private Future<String> deploy(Supplier<Verticle> supplier, int instances) {
         final Promise<String> promise = Promise.promise();
         final DeploymentOptions options = new DeploymentOptions()
                 .setConfig(config())
-                .setWorker(true);
+                .setWorker(config().getBoolean("country.worker", false))
+                .setInstances(instances)
+                .setWorkerPoolName("country-worker")
+                .setWorkerPoolSize(config().getInteger("country.worker-pool.size", VertxOptions.DEFAULT_WORKER_POOL_SIZE))
+                .setMaxWorkerExecuteTime(config().getLong("country.worker-pool.max-execute-time", 60_000L))
+                .setMaxWorkerExecuteTimeUnit(TimeUnit.MILLISECONDS);
 
         vertx.deployVerticle(supplier, options, promise);
 
@@ -0,0 +1,124 @@
+package us.vanderlugt.sample.vertx.model;
+
+import liquibase.Liquibase;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.LiquibaseException;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Brings the schema up to date with a Liquibase changelog on the class path.
+ *
+ * <p>In {@code update} mode Liquibase runs on every start. In {@code checksum} mode the SHA-256 of the changelog is
+ * stored in {@code schema_checksum} after a successful update and Liquibase, which parses the changelog and reads its
+ * own history tables, is only run when the stored checksum differs, so a start against a current schema costs one
+ * query. Only use it when nothing but this application migrates the database.
+ */
+@Slf4j
+public class SchemaMigration {
+    private final String changelog;
+    private final String mode;
+
+    public SchemaMigration(String changelog, String mode) {
+        if (!"update".equals(mode) && !"checksum".equals(mode)) {
+            throw new IllegalArgumentException("Unknown jdbc.migration " + mode + ", expected update or checksum");
+        }
+        this.changelog = changelog;
+        this.mode = mode;
+    }
+
+    /**
+     * Migrates the database, blocking.
+     *
+     * @return whether Liquibase ran, {@code false} when the changelog checksum matched
+     */
+    public boolean migrate(Connection connection) throws LiquibaseException, SQLException {
+        if ("update".equals(mode)) {
+            update(connection);
+            return true;
+        }
+
+        String checksum = checksum();
+        if (checksum.equals(storedChecksum(connection))) {
+            log.debug("Changelog {} unchanged, checksum = {}, skipping liquibase", changelog, checksum);
+            return false;
+        }
+        update(connection);
+        storeChecksum(connection, checksum);
+        return true;
+    }
+
+    private void update(Connection connection) throws LiquibaseException {
+        log.debug("Running liquibase migration of {}", changelog);
+        new Liquibase(changelog, new ClassLoaderResourceAccessor(), new JdbcConnection(connection))
+                .update("");
+    }
+
+    String checksum() {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(changelog)) {
+            if (in == null) {
+                throw new IllegalStateException("Changelog " + changelog + " not found on the class path");
+            }
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read = in.read(buffer);
+            while (read != -1) {
+                digest.update(buffer, 0, read);
+                read = in.read(buffer);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte value : digest.digest()) {
+                hex.append(String.format("%02x", value));
+            }
+            return hex.toString();
+        } catch (IOException | NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("Reading changelog " + changelog + " failed", exception);
+        }
+    }
+
+    private String storedChecksum(Connection connection) {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT checksum FROM schema_checksum WHERE changelog = ?")) {
+            statement.setString(1, changelog);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? result.getString(1) : null;
+            }
+        } catch (SQLException exception) {
+            log.debug("No stored checksum for {}: {}", changelog, exception.getMessage());
+            return null;
+        }
+    }
+
+    private void storeChecksum(Connection connection, String checksum) throws SQLException {
+        try (Statement create = connection.createStatement()) {
+            create.execute("CREATE TABLE IF NOT EXISTS schema_checksum " +
+                    "(changelog VARCHAR(255) PRIMARY KEY, checksum CHAR(64) NOT NULL)");
+        }
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM schema_checksum WHERE changelog = ?");
+                PreparedStatement insert = connection.prepareStatement("INSERT INTO schema_checksum (changelog, checksum) VALUES (?, ?)")) {
+            delete.setString(1, changelog);
+            delete.executeUpdate();
+            insert.setString(1, changelog);
+            insert.setString(2, checksum);
+            insert.executeUpdate();
+            connection.commit();
+        } catch (SQLException exception) {
+            connection.rollback();
+            throw exception;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
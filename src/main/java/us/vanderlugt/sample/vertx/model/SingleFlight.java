@@ -0,0 +1,105 @@
+package us.vanderlugt.sample.vertx.model;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key into one, callers arriving while a call is in flight share its result.
+ *
+ * <p>Shared between verticle instances, each caller's future completes on the context it called from. Keys should
+ * include a write version so a call started after a write never joins a read that began before it.
+ */
+@Slf4j
+public class SingleFlight<K, V> {
+    private final Map<K, List<Waiter<V>>> inFlight = new HashMap<>();
+    private long calls;
+    private long coalesced;
+
+    public Future<V> execute(K key, Supplier<Future<V>> call) {
+        Promise<V> promise = Promise.promise();
+        Waiter<V> waiter = new Waiter<>(Vertx.currentContext(), promise);
+        boolean leader;
+        synchronized (this) {
+            List<Waiter<V>> waiters = inFlight.get(key);
+            leader = waiters == null;
+            if (leader) {
+                waiters = new ArrayList<>();
+                inFlight.put(key, waiters);
+                calls++;
+            } else {
+                coalesced++;
+            }
+            waiters.add(waiter);
+        }
+        if (leader) {
+            Future<V> result;
+            try {
+                result = call.get();
+            } catch (RuntimeException exception) {
+                log.warn("Call for {} failed before returning a future", key, exception);
+                result = Future.failedFuture(exception);
+            }
+            result.setHandler(completed -> complete(key, completed));
+        } else {
+            log.debug("Joining in flight call for {}", key);
+        }
+        return promise.future();
+    }
+
+    /**
+     * Registers counters for the calls made and the calls that joined one already in flight.
+     */
+    public void bindTo(MeterRegistry registry, String operation) {
+        FunctionCounter.builder("single-flight.calls", this, SingleFlight::calls)
+                .description("Calls made on behalf of one or more callers")
+                .tag("operation", operation)
+                .register(registry);
+        FunctionCounter.builder("single-flight.coalesced", this, SingleFlight::coalesced)
+                .description("Callers that shared a call already in flight")
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    public synchronized long calls() {
+        return calls;
+    }
+
+    public synchronized long coalesced() {
+        return coalesced;
+    }
+
+    private void complete(K key, AsyncResult<V> result) {
+        List<Waiter<V>> waiters;
+        synchronized (this) {
+            waiters = inFlight.remove(key);
+        }
+        waiters.forEach(waiter -> waiter.handle(result));
+    }
+
+    @RequiredArgsConstructor
+    private static final class Waiter<V> {
+        private final Context context;
+        private final Promise<V> promise;
+
+        private void handle(AsyncResult<V> result) {
+            if (context == null || context == Vertx.currentContext()) {
+                promise.handle(result);
+            } else {
+                context.runOnContext(none -> promise.handle(result));
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import io.vertx.core.json.JsonObject;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, least recently used cache of countries keyed by id with a time to live per entry.
+ *
+ * <p>Reads that raced a write are rejected through {@link #putIfUnchanged(Country, long)} so a slow
+ * query can never put a stale country back after the write invalidated it. Writes only invalidate,
+ * since their callbacks can complete out of commit order; the next read fills the entry from the primary.
+ */
+@Slf4j
+public class CountryCache {
+    private final int maximumSize;
+    private final long timeToLiveNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long version;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public CountryCache(int maximumSize, long timeToLiveMillis) {
+        this(maximumSize, timeToLiveMillis, System::nanoTime);
+    }
+
+    CountryCache(int maximumSize, long timeToLiveMillis, LongSupplier clock) {
+        this.maximumSize = Math.max(maximumSize, 0);
+        this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis);
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return maximumSize > 0;
+    }
+
+    public synchronized Country get(String id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            misses++;
+            return null;
+        } else if (clock.getAsLong() - entry.created >= timeToLiveNanos) {
+            log.debug("Cached country {} expired", id);
+            entries.remove(id);
+            evictions++;
+            misses++;
+            return null;
+        } else {
+            hits++;
+            return entry.country;
+        }
+    }
+
+    /**
+     * Current write version, capture it before querying the database and pass it to {@link #putIfUnchanged(Country, long)}.
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    public synchronized void put(Country country) {
+        version++;
+        store(country);
+    }
+
+    public synchronized boolean putIfUnchanged(Country country, long expectedVersion) {
+        if (version == expectedVersion) {
+            store(country);
+            return true;
+        } else {
+            log.debug("Country {} changed while it was being read, not caching", country.getId());
+            return false;
+        }
+    }
+
+    public synchronized void invalidate(String id) {
+        version++;
+        entries.remove(id);
+    }
+
+    public synchronized void clear() {
+        version++;
+        entries.clear();
+    }
+
+    public synchronized JsonObject stats() {
+        return new JsonObject()
+                .put("size", entries.size())
+                .put("maximumSize", maximumSize)
+                .put("hits", hits)
+                .put("misses", misses)
+                .put("evictions", evictions);
+    }
+
+    private void store(Country country) {
+        if (isEnabled()) {
+            entries.put(country.getId(), new Entry(country, clock.getAsLong()));
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maximumSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class Entry {
+        private final Country country;
+        private final long created;
+    }
+}
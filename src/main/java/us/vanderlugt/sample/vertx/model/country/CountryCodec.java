@@ -0,0 +1,85 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageCodec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Event bus codec for {@link Country}, local delivery passes the reference so a country must not be modified once sent.
+ * The wire form used between cluster nodes is the length prefixed UTF-8 id, name and capital.
+ */
+@Slf4j
+public class CountryCodec implements MessageCodec<Country, Country> {
+    public static final String NAME = "country";
+
+    /**
+     * Registers the country codecs as the default for {@link Country} and under their names, once per event bus.
+     */
+    public static void register(EventBus eventBus) {
+        try {
+            eventBus.registerDefaultCodec(Country.class, new CountryCodec());
+            eventBus.registerCodec(new CountryListCodec());
+        } catch (IllegalStateException exception) {
+            log.debug("Country codecs already registered");
+        }
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, Country country) {
+        write(buffer, country);
+    }
+
+    @Override
+    public Country decodeFromWire(int position, Buffer buffer) {
+        return read(buffer, new int[]{position});
+    }
+
+    @Override
+    public Country transform(Country country) {
+        return country;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+
+    static void write(Buffer buffer, Country country) {
+        writeString(buffer, country.getId());
+        writeString(buffer, country.getName());
+        writeString(buffer, country.getCapital());
+    }
+
+    static Country read(Buffer buffer, int[] position) {
+        return new Country(readString(buffer, position), readString(buffer, position), readString(buffer, position));
+    }
+
+    private static void writeString(Buffer buffer, String value) {
+        if (value == null) {
+            buffer.appendInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            buffer.appendInt(bytes.length)
+                    .appendBytes(bytes);
+        }
+    }
+
+    private static String readString(Buffer buffer, int[] position) {
+        int length = buffer.getInt(position[0]);
+        position[0] += Integer.BYTES;
+        if (length < 0) {
+            return null;
+        }
+        String value = buffer.getString(position[0], position[0] + length, StandardCharsets.UTF_8.name());
+        position[0] += length;
+        return value;
+    }
+}
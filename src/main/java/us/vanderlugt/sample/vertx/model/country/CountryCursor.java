@@ -0,0 +1,40 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import io.vertx.core.json.JsonObject;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position in the country search order of {@code UPPER(name), id}.
+ */
+@Value
+public class CountryCursor {
+    private static final int ID_LENGTH = 2;
+
+    private String id;
+    private String nameUpper;
+
+    public static CountryCursor of(JsonObject row) {
+        return new CountryCursor(row.getString("ID"), row.getString("NAME_UPPER"));
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException if the value is not a valid cursor
+     */
+    public static CountryCursor decode(String value) {
+        String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+        if (decoded.length() < ID_LENGTH) {
+            throw new IllegalArgumentException("Invalid cursor " + value);
+        }
+        return new CountryCursor(decoded.substring(0, ID_LENGTH), decoded.substring(ID_LENGTH));
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((id + nameUpper).getBytes(StandardCharsets.UTF_8));
+    }
+}
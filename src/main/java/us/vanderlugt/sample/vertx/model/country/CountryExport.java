@@ -0,0 +1,104 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.json.Json;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pumps all countries to an event bus address as newline delimited JSON chunks, one keyset page per chunk.
+ *
+ * <p>Every chunk is sent as a request and the receiver acknowledges it once it has been written, no further page is
+ * read while {@code window} chunks are unacknowledged so a slow reader holds back the database reads instead of
+ * growing the heap. The last message carries an {@code end} header, or an {@code error} header if a read failed or
+ * a chunk was not acknowledged within {@code ackTimeout} milliseconds because the client stopped reading.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class CountryExport {
+    private final EventBus eventBus;
+    private final CountryRepository repository;
+    private final String address;
+    private final int chunkSize;
+    private final int window;
+    private final long ackTimeout;
+
+    private CountryCursor after;
+    private int unacknowledged;
+    private boolean reading;
+    private boolean exhausted;
+    private boolean cancelled;
+
+    void start() {
+        log.debug("Exporting countries to {}", address);
+        read();
+    }
+
+    private void read() {
+        if (reading || exhausted || cancelled || unacknowledged >= window) {
+            return;
+        }
+        reading = true;
+        repository.searchCountries(CountryFilter.NONE, chunkSize, after)
+                .setHandler(result -> {
+                    reading = false;
+                    if (cancelled) {
+                        log.debug("Export to {} cancelled, discarding page", address);
+                    } else if (result.failed()) {
+                        fail(result.cause());
+                    } else {
+                        CountryPage page = result.result();
+                        after = page.getNext();
+                        exhausted = after == null;
+                        if (!page.getCountries().isEmpty()) {
+                            send(page);
+                        }
+                        if (exhausted) {
+                            end();
+                        } else {
+                            read();
+                        }
+                    }
+                });
+    }
+
+    private void send(CountryPage page) {
+        Buffer chunk = Buffer.buffer();
+        page.getCountries().forEach(country -> chunk.appendString(Json.encode(country)).appendString("\n"));
+        unacknowledged++;
+        eventBus.request(address, chunk, new DeliveryOptions().setSendTimeout(ackTimeout), acknowledgement -> {
+            unacknowledged--;
+            if (acknowledgement.failed()) {
+                if (cancelled) {
+                    log.debug("Export to {} already cancelled", address);
+                } else if (timedOut(acknowledgement.cause())) {
+                    fail(acknowledgement.cause());
+                } else {
+                    log.debug("Export to {} cancelled by receiver", address, acknowledgement.cause());
+                    cancelled = true;
+                }
+            } else {
+                read();
+            }
+        });
+    }
+
+    private static boolean timedOut(Throwable cause) {
+        return cause instanceof ReplyException && ((ReplyException) cause).failureType() == ReplyFailure.TIMEOUT;
+    }
+
+    private void end() {
+        log.debug("Export to {} complete", address);
+        eventBus.send(address, null, new DeliveryOptions().addHeader("end", "true"));
+    }
+
+    private void fail(Throwable cause) {
+        log.warn("Exporting countries failed", cause);
+        cancelled = true;
+        eventBus.send(address, null, new DeliveryOptions().addHeader("error", String.valueOf(cause.getMessage())));
+    }
+}
@@ -0,0 +1,18 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import lombok.Value;
+
+/**
+ * Case insensitive name and capital prefixes a search is restricted to, an absent prefix matches every country.
+ */
+@Value
+public class CountryFilter {
+    public static final CountryFilter NONE = new CountryFilter(null, null);
+
+    private String name;
+    private String capital;
+
+    public boolean isEmpty() {
+        return name == null && capital == null;
+    }
+}
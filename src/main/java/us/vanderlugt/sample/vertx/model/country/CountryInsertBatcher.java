@@ -0,0 +1,117 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import us.vanderlugt.sample.vertx.model.ConflictException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Group commit of single country inserts, inserts arriving within {@code windowMillis} of the first, or until
+ * {@code maximumSize} are waiting, are written in one batch transaction through
+ * {@link CountryRepository#createCountries(List)}.
+ *
+ * <p>Each caller's future completes with the outcome of its own country on the context it called from. A batch that
+ * races a concurrent insert of the same id is retried row by row so the conflict only fails the caller it belongs to.
+ */
+@Slf4j
+public class CountryInsertBatcher {
+    private final Vertx vertx;
+    private final CountryRepository repository;
+    private final long windowMillis;
+    private final int maximumSize;
+    private final DistributionSummary batchSizes;
+    private List<Pending> pending = new ArrayList<>();
+    private long timer = -1;
+
+    public CountryInsertBatcher(Vertx vertx, CountryRepository repository, long windowMillis, int maximumSize,
+                                MeterRegistry registry) {
+        this.vertx = vertx;
+        this.repository = repository;
+        this.windowMillis = windowMillis;
+        this.maximumSize = maximumSize;
+        this.batchSizes = DistributionSummary.builder("country.insert.batch.size")
+                .description("Countries written per group commit")
+                .register(registry);
+    }
+
+    public Future<Country> insert(Country country) {
+        Promise<Country> promise = Promise.promise();
+        List<Pending> full = null;
+        synchronized (this) {
+            pending.add(new Pending(country, Vertx.currentContext(), promise));
+            if (pending.size() >= maximumSize) {
+                full = take();
+            } else if (pending.size() == 1) {
+                timer = vertx.setTimer(windowMillis, this::windowElapsed);
+            }
+        }
+        if (full != null) {
+            write(full);
+        }
+        return promise.future();
+    }
+
+    private void windowElapsed(long id) {
+        List<Pending> batch;
+        synchronized (this) {
+            if (id != timer) {
+                return;
+            }
+            batch = take();
+        }
+        write(batch);
+    }
+
+    private List<Pending> take() {
+        if (timer != -1) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void write(List<Pending> batch) {
+        log.debug("Writing batch of {} countries", batch.size());
+        batchSizes.record(batch.size());
+        repository.createCountries(batch.stream().map(waiting -> waiting.country).collect(Collectors.toList()))
+                .setHandler(async -> {
+                    if (async.succeeded()) {
+                        for (int index = 0; index < batch.size(); index++) {
+                            batch.get(index).complete(async.result().get(index));
+                        }
+                    } else if (async.cause() instanceof ConflictException) {
+                        log.debug("Batch of {} countries raced a concurrent insert, inserting one by one", batch.size());
+                        batch.forEach(waiting -> repository.createCountry(waiting.country).setHandler(waiting::complete));
+                    } else {
+                        batch.forEach(waiting -> waiting.complete(Future.failedFuture(async.cause())));
+                    }
+                });
+    }
+
+    @RequiredArgsConstructor
+    private static final class Pending {
+        private final Country country;
+        private final Context context;
+        private final Promise<Country> promise;
+
+        private void complete(AsyncResult<Country> result) {
+            if (context == null || context == Vertx.currentContext()) {
+                promise.handle(result);
+            } else {
+                context.runOnContext(none -> promise.handle(result));
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Event bus codec for lists of countries, select it with {@code DeliveryOptions.setCodecName(CountryListCodec.NAME)}.
+ */
+public class CountryListCodec implements MessageCodec<List<Country>, List<Country>> {
+    public static final String NAME = "country-list";
+
+    @Override
+    public void encodeToWire(Buffer buffer, List<Country> countries) {
+        buffer.appendInt(countries.size());
+        countries.forEach(country -> CountryCodec.write(buffer, country));
+    }
+
+    @Override
+    public List<Country> decodeFromWire(int position, Buffer buffer) {
+        int[] cursor = {position + Integer.BYTES};
+        int size = buffer.getInt(position);
+        List<Country> countries = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            countries.add(CountryCodec.read(buffer, cursor));
+        }
+        return countries;
+    }
+
+    @Override
+    public List<Country> transform(List<Country> countries) {
+        return countries;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
@@ -0,0 +1,13 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class CountryPage {
+    private List<Country> countries;
+    private CountryCursor next;
+}
@@ -1,26 +1,53 @@
 package us.vanderlugt.sample.vertx.model.country;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.jdbc.JDBCClient;
 import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLConnection;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.h2.jdbc.JdbcSQLIntegrityConstraintViolationException;
 import us.vanderlugt.sample.vertx.model.ConflictException;
 import us.vanderlugt.sample.vertx.model.EntityNotFoundException;
 
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
 @RequiredArgsConstructor
 public class CountryRepository {
     private final JDBCClient client;
+    private final MeterRegistry registry;
+    private final CountryInsertBatcher batcher;
 
+    public CountryRepository(JDBCClient client, MeterRegistry registry) {
+        this(client, registry, null);
+    }
+
+    /**
+     * Inserts the country, through the insert batcher when one is configured so that concurrent inserts share one
+     * transaction. A batched insert is timed once, as part of the batch's {@code createCountries} query.
+     */
     public Future<Country> createCountry(Country country) {
-        return Future.future(promise -> {
+        if (batcher != null) {
+            return batcher.insert(country);
+        }
+        return timed("createCountry", promise -> {
             String sql = "INSERT INTO country (id, name, capital) " +
                     "VALUES (?, ?, ?)";
             JsonArray params = new JsonArray()
@@ -44,8 +71,58 @@ public class CountryRepository {
 
     }
 
+    /**
+     * Inserts countries in a single batch transaction, countries that already exist or repeat an id of an earlier
+     * country in the list fail with a {@link ConflictException} and are skipped.
+     *
+     * @return the outcome of each country in the order given
+     */
+    public Future<List<AsyncResult<Country>>> createCountries(List<Country> countries) {
+        return timed("createCountries", done -> insertCountries(countries).setHandler(done));
+    }
+
+    private Future<List<AsyncResult<Country>>> insertCountries(List<Country> countries) {
+        return inTransaction(connection -> existingIds(connection, countries)
+                .compose(existing -> Future.future(promise -> {
+                    Set<String> ids = new HashSet<>(existing);
+                    List<AsyncResult<Country>> results = new ArrayList<>(countries.size());
+                    List<JsonArray> batch = new ArrayList<>(countries.size());
+                    for (Country country : countries) {
+                        if (ids.add(country.getId())) {
+                            batch.add(new JsonArray()
+                                    .add(country.getId())
+                                    .add(country.getName())
+                                    .add(country.getCapital()));
+                            results.add(Future.succeededFuture(country));
+                        } else {
+                            results.add(Future.failedFuture(new ConflictException(country.getId())));
+                        }
+                    }
+
+                    if (batch.isEmpty()) {
+                        log.debug("All {} countries conflict, nothing to insert", countries.size());
+                        promise.complete(results);
+                        return;
+                    }
+                    String sql = "INSERT INTO country (id, name, capital) VALUES (?, ?, ?)";
+                    log.debug("Batch insert sql = {}, rows = {}", sql, batch.size());
+                    connection.batchWithParams(sql, batch, result -> {
+                        if (result.succeeded()) {
+                            log.debug("Inserted {} countries", batch.size());
+                            promise.complete(results);
+                        } else if (isIntegrityViolation(result.cause())) {
+                            log.debug("SQL integrity constraint violated by concurrent insert, failing with 409 failure");
+                            promise.fail(new ConflictException(batch.get(0).getString(0)));
+                        } else {
+                            log.warn("Batch insert of countries failed, failing with 500", result.cause());
+                            promise.fail(result.cause());
+                        }
+                    });
+                })));
+    }
+
     public Future<Country> getCountry(String id) {
-        return Future.future(promise -> {
+        return timed("getCountry", promise -> {
             String sql = "SELECT id, name, capital FROM country WHERE id = ?";
             log.debug("Getting country with id = {}, sql = {}", id, sql);
             JsonArray params = new JsonArray()
@@ -72,11 +149,14 @@ public class CountryRepository {
         });
     }
 
-    public Future<List<Country>> searchCountries() {
-        return Future.future(promise -> {
-            String sql = "SELECT id, name, capital FROM country ORDER BY UPPER(name)";
-            log.debug("Searching for countries, sql = {}", sql);
-            client.query(sql, response -> {
+    public Future<List<Country>> searchCountries(CountryFilter filter) {
+        return timed("searchCountries", promise -> {
+            JsonArray params = new JsonArray();
+            StringBuilder sql = new StringBuilder("SELECT id, name, capital FROM country");
+            where(sql, params, filter, null);
+            sql.append(" ORDER BY name_upper, id");
+            log.debug("Searching for countries, sql = {}, params = {}", sql, params);
+            client.queryWithParams(sql.toString(), params, response -> {
                 if (response.succeeded()) {
                     ResultSet resultSet = response.result();
                     log.debug("Found {} countries", resultSet.getNumRows());
@@ -97,48 +177,177 @@ public class CountryRepository {
         });
     }
 
+    public Future<CountryPage> searchCountries(CountryFilter filter, int limit, CountryCursor after) {
+        return timed("searchCountriesPage", promise -> {
+            JsonArray params = new JsonArray();
+            StringBuilder sql = new StringBuilder("SELECT id, name, capital, name_upper FROM country");
+            where(sql, params, filter, after);
+            sql.append(" ORDER BY name_upper, id LIMIT ?");
+            params.add(limit + 1);
+            log.debug("Searching for page of countries, sql = {}, params = {}", sql, params);
+            client.queryWithParams(sql.toString(), params, response -> {
+                if (response.succeeded()) {
+                    List<JsonObject> rows = response.result().getRows();
+                    log.debug("Found {} countries", rows.size());
+                    List<JsonObject> page = rows.subList(0, Math.min(rows.size(), limit));
+                    promise.complete(new CountryPage(
+                            page.stream()
+                                    .map(Country::map)
+                                    .collect(Collectors.toList()),
+                            rows.size() > limit ? CountryCursor.of(page.get(page.size() - 1)) : null));
+                } else {
+                    log.warn("Search for page of countries failed, failing with 500", response.cause());
+                    promise.fail(response.cause());
+                }
+            });
+        });
+    }
+
     public Future<Country> updateCountry(Country update) {
-        return getCountry(update.getId())
-                .compose(existing -> Future.future(promise -> {
-                    if (existing != null) {
-                        log.debug("Updated country = {}", existing);
-                        String sql = "UPDATE country SET name = ?, capital = ? WHERE id = ?";
-                        JsonArray params = new JsonArray()
-                                .add(update.getName())
-                                .add(update.getCapital())
-                                .add(update.getId());
-                        client.updateWithParams(sql, params, result -> {
-                            if (result.succeeded()) { //todo do we need to check rows updated?
-                                promise.complete(update);
-                            } else {
-                                promise.fail(result.cause());
-                            }
-                        });
-                    } else {
-                        promise.fail(new EntityNotFoundException(update.getId()));
-                    }
-                }));
+        return timed("updateCountry", promise -> {
+            String sql = "UPDATE country SET name = ?, capital = ? WHERE id = ?";
+            JsonArray params = new JsonArray()
+                    .add(update.getName())
+                    .add(update.getCapital())
+                    .add(update.getId());
+            log.debug("Update sql = {}, params = {}", sql, params);
+            client.updateWithParams(sql, params, result -> {
+                if (result.failed()) {
+                    log.warn("Updating country failed, failing with 500", result.cause());
+                    promise.fail(result.cause());
+                } else if (result.result().getUpdated() == 0) {
+                    log.debug("Country not found, failing with 404 failure");
+                    promise.fail(new EntityNotFoundException(update.getId()));
+                } else {
+                    log.debug("Updated country = {}", update);
+                    promise.complete(update);
+                }
+            });
+        });
     }
 
+    /**
+     * Deletes a country and returns the deleted row from the same statement through an H2 data change delta table.
+     */
     public Future<Country> deleteCountry(String id) {
-        return getCountry(id)
-                .compose(country -> Future.future(
-                        promise -> {
-                            if (country != null) {
-                                log.debug("Deleting country = {}", country);
-                                String sql = "DELETE FROM country WHERE id = ?";
-                                JsonArray params = new JsonArray()
-                                        .add(id);
-                                client.updateWithParams(sql, params, result -> {
-                                    if (result.succeeded()) { //todo do we need to check rows updated?
-                                        promise.complete(country);
+        return timed("deleteCountry", promise -> {
+            String sql = "SELECT id, name, capital FROM OLD TABLE (DELETE FROM country WHERE id = ?)";
+            JsonArray params = new JsonArray()
+                    .add(id);
+            log.debug("Delete sql = {}, params = {}", sql, params);
+            client.queryWithParams(sql, params, response -> {
+                if (response.failed()) {
+                    log.warn("Deleting country failed, failing with 500", response.cause());
+                    promise.fail(response.cause());
+                } else if (response.result().getNumRows() == 0) {
+                    log.debug("Country not found, failing with 404 failure");
+                    promise.fail(new EntityNotFoundException(id));
+                } else {
+                    Country country = Country.map(response.result().getRows().get(0));
+                    log.debug("Deleted country = {}", country);
+                    promise.complete(country);
+                }
+            });
+        });
+    }
+
+    /**
+     * Appends the filter and cursor conditions, a prefix is matched with {@code LIKE} on the upper case columns so H2
+     * turns it into a range scan of their indexes.
+     */
+    private static void where(StringBuilder sql, JsonArray params, CountryFilter filter, CountryCursor after) {
+        List<String> conditions = new ArrayList<>();
+        if (filter.getName() != null) {
+            conditions.add("name_upper LIKE ? ESCAPE '\\'");
+            params.add(prefix(filter.getName()));
+        }
+        if (filter.getCapital() != null) {
+            conditions.add("capital_upper LIKE ? ESCAPE '\\'");
+            params.add(prefix(filter.getCapital()));
+        }
+        if (after != null) {
+            conditions.add("name_upper >= ? AND (name_upper > ? OR id > ?)");
+            params.add(after.getNameUpper())
+                    .add(after.getNameUpper())
+                    .add(after.getId());
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+    }
+
+    private static String prefix(String value) {
+        return value.toUpperCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+    }
+
+    /**
+     * Runs a query and records its latency under the repository method name.
+     */
+    private <T> Future<T> timed(String method, Handler<Promise<T>> query) {
+        Timer.Sample sample = Timer.start(registry);
+        Promise<T> timed = Promise.promise();
+        Future.future(query).setHandler(result -> {
+            sample.stop(Timer.builder("repository.queries")
+                    .description("Country repository query latency by method")
+                    .tag("method", method)
+                    .tag("outcome", result.succeeded() ? "success" : "failure")
+                    .publishPercentileHistogram()
+                    .register(registry));
+            timed.handle(result);
+        });
+        return timed.future();
+    }
+
+    private Future<List<String>> existingIds(SQLConnection connection, List<Country> countries) {
+        return Future.future(promise -> {
+            JsonArray params = new JsonArray();
+            countries.forEach(country -> params.add(country.getId()));
+            String sql = "SELECT id FROM country WHERE id IN (" +
+                    String.join(", ", Collections.nCopies(params.size(), "?")) + ")";
+            connection.queryWithParams(sql, params, response -> {
+                if (response.succeeded()) {
+                    promise.complete(response.result().getResults().stream()
+                            .map(row -> row.getString(0))
+                            .collect(Collectors.toList()));
+                } else {
+                    promise.fail(response.cause());
+                }
+            });
+        });
+    }
+
+    private <T> Future<T> inTransaction(Function<SQLConnection, Future<T>> work) {
+        return Future.<SQLConnection>future(client::getConnection)
+                .compose(connection -> Future.future(promise ->
+                        Future.<Void>future(done -> connection.setAutoCommit(false, done))
+                                .compose(none -> work.apply(connection))
+                                .compose(result -> Future.<Void>future(connection::commit).map(result))
+                                .setHandler(result -> {
+                                    if (result.succeeded()) {
+                                        connection.close();
+                                        promise.complete(result.result());
                                     } else {
-                                        promise.fail(result.cause());
+                                        log.debug("Rolling back transaction", result.cause());
+                                        connection.rollback(rollback -> {
+                                            connection.close();
+                                            promise.fail(result.cause());
+                                        });
                                     }
-                                });
-                            } else {
-                                promise.fail(new EntityNotFoundException(id));
-                            }
-                        }));
+                                })));
+    }
+
+    private static boolean isIntegrityViolation(Throwable cause) {
+        for (Throwable current = cause; current != null; current = current.getCause()) {
+            if (current instanceof SQLIntegrityConstraintViolationException) {
+                return true;
+            } else if (current instanceof SQLException &&
+                    ((SQLException) current).getNextException() instanceof SQLIntegrityConstraintViolationException) {
+                return true;
+            }
+        }
+        return false;
     }
 }
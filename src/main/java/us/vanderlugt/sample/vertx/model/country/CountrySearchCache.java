@@ -0,0 +1,115 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import io.vertx.core.buffer.Buffer;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds the encoded search response and its strong entity tag until the next write invalidates it.
+ */
+@Slf4j
+public class CountrySearchCache {
+    private Result result;
+    private long version;
+
+    public synchronized Result get() {
+        return result;
+    }
+
+    public synchronized long version() {
+        return version;
+    }
+
+    public synchronized boolean putIfUnchanged(Result update, long expectedVersion) {
+        if (version == expectedVersion) {
+            result = update;
+            return true;
+        } else {
+            log.debug("Countries changed while searching, not caching search result");
+            return false;
+        }
+    }
+
+    public synchronized void invalidate() {
+        version++;
+        result = null;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Result {
+        private final Buffer body;
+        private final String etag;
+        @Getter(AccessLevel.NONE)
+        private Buffer gzipped;
+
+        public static Result of(Buffer body) {
+            return new Result(body, etag(body));
+        }
+
+        public boolean isEmpty() {
+            return body == null;
+        }
+
+        /**
+         * The body compressed with gzip, compressed by the first caller and shared until the result is invalidated.
+         */
+        public synchronized Buffer gzipped() {
+            if (gzipped == null) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length() / 4);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                    gzip.write(body.getBytes());
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+                gzipped = Buffer.buffer(bytes.toByteArray());
+                log.debug("Compressed search result from {} to {} bytes", body.length(), gzipped.length());
+            }
+            return gzipped;
+        }
+
+        /**
+         * The entity tag of the gzip body, weak like the one nginx sends for a body it compressed because the bytes
+         * differ from the identity body while {@link #matches(String)} still matches both.
+         */
+        public String getGzippedEtag() {
+            return etag == null ? null : "W/" + etag;
+        }
+
+        /**
+         * Evaluates an If-None-Match header value against this result, weak validators are compared weakly.
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null || etag == null) {
+                return false;
+            }
+            return Arrays.stream(ifNoneMatch.split(","))
+                    .map(String::trim)
+                    .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                    .anyMatch(tag -> tag.equals("*") || tag.equals(etag));
+        }
+
+        private static String etag(Buffer body) {
+            if (body == null) {
+                return null;
+            }
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes());
+                return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + '"';
+            } catch (NoSuchAlgorithmException exception) {
+                throw new IllegalStateException("SHA-256 message digest unavailable", exception);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Type-ahead index of country names and capitals held as two arrays of upper case keys sorted for binary search.
+ *
+ * <p>Writes are applied incrementally, an entry is inserted or removed with one array copy and the new arrays are
+ * published together, so suggestions read a consistent snapshot without locking and never touch the database.
+ *
+ * <p>Every write to an id bumps the id's version. Write callbacks can complete out of commit order, so the writer
+ * re-reads the row afterwards and applies it through {@link #putIfUnchanged(Country, long)}, which a later write to
+ * the same id rejects; the index ends up with the row as the database last committed it.
+ */
+@Slf4j
+public class CountrySuggestIndex {
+    private final Map<String, Country> countries = new HashMap<>();
+    private final Map<String, Long> versions = new HashMap<>();
+    private volatile Snapshot snapshot = new Snapshot(new Entry[0], new Entry[0]);
+
+    public synchronized void load(List<Country> all) {
+        countries.clear();
+        all.forEach(country -> countries.put(country.getId(), country));
+        Entry[] names = entries(Country::getName);
+        Entry[] capitals = entries(Country::getCapital);
+        snapshot = new Snapshot(names, capitals);
+        log.debug("Loaded {} countries into the suggest index", countries.size());
+    }
+
+    /**
+     * Applies a write and returns the id's new version to pass to {@link #putIfUnchanged(Country, long)}.
+     */
+    public synchronized long put(Country country) {
+        store(country);
+        return versions.merge(country.getId(), 1L, Long::sum);
+    }
+
+    public synchronized long remove(String id) {
+        delete(id);
+        return versions.merge(id, 1L, Long::sum);
+    }
+
+    public synchronized boolean putIfUnchanged(Country country, long expectedVersion) {
+        if (versions.getOrDefault(country.getId(), 0L) == expectedVersion) {
+            store(country);
+            return true;
+        } else {
+            log.debug("Country {} written again since version {}, not indexing the re-read", country.getId(), expectedVersion);
+            return false;
+        }
+    }
+
+    public synchronized boolean removeIfUnchanged(String id, long expectedVersion) {
+        if (versions.getOrDefault(id, 0L) == expectedVersion) {
+            delete(id);
+            return true;
+        } else {
+            log.debug("Country {} written again since version {}, not removing it", id, expectedVersion);
+            return false;
+        }
+    }
+
+    /**
+     * Countries whose name starts with the query, case insensitive, followed by those whose capital does.
+     */
+    public List<Country> suggest(String query, int limit) {
+        String prefix = query.toUpperCase(Locale.ROOT);
+        Snapshot current = snapshot;
+        List<Country> matches = new ArrayList<>(limit);
+        collect(current.names, prefix, limit, matches);
+        collect(current.capitals, prefix, limit, matches);
+        return matches;
+    }
+
+    private void store(Country country) {
+        Country previous = countries.put(country.getId(), country);
+        Snapshot current = snapshot;
+        Entry[] names = current.names;
+        Entry[] capitals = current.capitals;
+        if (previous != null) {
+            names = without(names, new Entry(previous.getName(), previous));
+            capitals = without(capitals, new Entry(previous.getCapital(), previous));
+        }
+        snapshot = new Snapshot(
+                with(names, new Entry(country.getName(), country)),
+                with(capitals, new Entry(country.getCapital(), country)));
+    }
+
+    private void delete(String id) {
+        Country previous = countries.remove(id);
+        if (previous != null) {
+            Snapshot current = snapshot;
+            snapshot = new Snapshot(
+                    without(current.names, new Entry(previous.getName(), previous)),
+                    without(current.capitals, new Entry(previous.getCapital(), previous)));
+        }
+    }
+
+    private Entry[] entries(Function<Country, String> key) {
+        return countries.values().stream()
+                .map(country -> new Entry(key.apply(country), country))
+                .sorted()
+                .toArray(Entry[]::new);
+    }
+
+    private static void collect(Entry[] entries, String prefix, int limit, List<Country> matches) {
+        int found = Arrays.binarySearch(entries, new Entry(prefix, ""));
+        int next = found < 0 ? -found - 1 : found;
+        while (next < entries.length && matches.size() < limit && entries[next].key.startsWith(prefix)) {
+            if (!matches.contains(entries[next].country)) {
+                matches.add(entries[next].country);
+            }
+            next++;
+        }
+    }
+
+    private static Entry[] with(Entry[] entries, Entry entry) {
+        int index = -Arrays.binarySearch(entries, entry) - 1;
+        Entry[] inserted = new Entry[entries.length + 1];
+        System.arraycopy(entries, 0, inserted, 0, index);
+        inserted[index] = entry;
+        System.arraycopy(entries, index, inserted, index + 1, entries.length - index);
+        return inserted;
+    }
+
+    private static Entry[] without(Entry[] entries, Entry entry) {
+        int index = Arrays.binarySearch(entries, entry);
+        Entry[] removed = new Entry[entries.length - 1];
+        System.arraycopy(entries, 0, removed, 0, index);
+        System.arraycopy(entries, index + 1, removed, index, entries.length - index - 1);
+        return removed;
+    }
+
+    private static final class Snapshot {
+        private final Entry[] names;
+        private final Entry[] capitals;
+
+        private Snapshot(Entry[] names, Entry[] capitals) {
+            this.names = names;
+            this.capitals = capitals;
+        }
+    }
+
+    /**
+     * Upper case key ordered by key and then country id, so countries sharing a name keep a stable position.
+     */
+    private static final class Entry implements Comparable<Entry> {
+        private final String key;
+        private final String id;
+        private final Country country;
+
+        private Entry(String key, Country country) {
+            this.key = key.toUpperCase(Locale.ROOT);
+            this.id = country.getId();
+            this.country = country;
+        }
+
+        private Entry(String key, String id) {
+            this.key = key;
+            this.id = id;
+            this.country = null;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int compared = key.compareTo(other.key);
+            return compared != 0 ? compared : id.compareTo(other.id);
+        }
+    }
+}
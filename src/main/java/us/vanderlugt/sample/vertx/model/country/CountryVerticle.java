@@ -1,44 +1,92 @@
 package us.vanderlugt.sample.vertx.model.country;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Promise;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.jdbc.JDBCClient;
 import lombok.extern.slf4j.Slf4j;
 import us.vanderlugt.sample.vertx.model.ConflictException;
 import us.vanderlugt.sample.vertx.model.EntityNotFoundException;
+import us.vanderlugt.sample.vertx.model.SingleFlight;
+
+import java.util.List;
 
 @Slf4j
 public class CountryVerticle extends AbstractVerticle {
     private final JDBCClient client;
     private final CountryRepository repository;
+    private final CountryRepository readRepository;
+    private final CountryCache cache;
+    private final CountrySearchCache searchCache;
+    private final CountrySuggestIndex suggestIndex;
+    private final SingleFlight<String, Country> gets;
+    private final SingleFlight<String, List<Country>> searches;
 
-    public CountryVerticle(JDBCClient client) {
+    /**
+     * Writes go through {@code client}, reads through {@code readClient}, which is the same client unless a read
+     * replica is configured.
+     */
+    public CountryVerticle(JDBCClient client, JDBCClient readClient, CountryCache cache, CountrySearchCache searchCache,
+                           CountrySuggestIndex suggestIndex, SingleFlight<String, Country> gets,
+                           SingleFlight<String, List<Country>> searches, CountryInsertBatcher batcher,
+                           MeterRegistry registry) {
         this.client = client;
-        this.repository = new CountryRepository(client);
+        this.repository = new CountryRepository(client, registry, batcher);
+        this.readRepository = readClient == client ? repository : new CountryRepository(readClient, registry);
+        this.cache = cache;
+        this.searchCache = searchCache;
+        this.suggestIndex = suggestIndex;
+        this.gets = gets;
+        this.searches = searches;
     }
 
     @Override
     public void start(Promise<Void> start) {
         log.debug("Starting country verticle");
+        CountryCodec.register(vertx.eventBus());
         vertx.eventBus().consumer("us.vanderlugt.country.create", this::createCountry);
+        vertx.eventBus().consumer("us.vanderlugt.country.batch", this::createCountries);
         vertx.eventBus().consumer("us.vanderlugt.country.get", this::getCountryHandler);
         vertx.eventBus().consumer("us.vanderlugt.country.search", this::searchCountries);
+        vertx.eventBus().consumer("us.vanderlugt.country.suggest", this::suggestCountries);
+        vertx.eventBus().consumer("us.vanderlugt.country.export", this::exportCountries);
         vertx.eventBus().consumer("us.vanderlugt.country.update", this::updateCountry);
         vertx.eventBus().consumer("us.vanderlugt.country.delete", (Handler<Message<String>>) this::deleteCountry);
+        vertx.eventBus().consumer("us.vanderlugt.country.cache.stats", message -> message.reply(cache.stats()));
         log.debug("Country verticle started");
         start.complete();
     }
 
-    private void createCountry(Message<String> message) {
-        Country country = Json.decodeValue(message.body(), Country.class);
+    /**
+     * The read replica, or the primary when the caller asked for {@code consistency: primary} to read its own writes.
+     * Replica reads may lag behind the writes, so the misses that fill the country and search caches read the primary
+     * instead and the replica serves the uncached reads: pages, filtered searches, exports and gets with the cache off.
+     */
+    private CountryRepository reads(Message<?> message) {
+        return "primary".equals(message.headers().get("consistency")) ? repository : readRepository;
+    }
+
+    private String source(CountryRepository reads) {
+        return reads == repository ? "primary" : "replica";
+    }
+
+    private void createCountry(Message<Country> message) {
+        Country country = message.body();
         repository.createCountry(country)
                 .setHandler(result -> {
                     if (result.succeeded()) {
                         log.debug("Country created, replying with country");
-                        message.reply(Json.encode(result.result()));
+                        cache.invalidate(country.getId());
+                        searchCache.invalidate();
+                        refreshSuggestion(country.getId(), suggestIndex.put(result.result()));
+                        message.reply(result.result());
                     } else if (result.cause() instanceof ConflictException) {
                         log.debug("Conflict detected, failing with 409 failure");
                         message.fail(409, "Conflict with existing country " + country.getId());
@@ -49,14 +97,59 @@ public class CountryVerticle extends AbstractVerticle {
                 });
     }
 
+    private void createCountries(Message<List<Country>> message) {
+        List<Country> countries = message.body();
+        repository.createCountries(countries)
+                .setHandler(async -> {
+                    if (async.succeeded()) {
+                        JsonArray results = new JsonArray();
+                        for (AsyncResult<Country> result : async.result()) {
+                            if (result.succeeded()) {
+                                cache.invalidate(result.result().getId());
+                                refreshSuggestion(result.result().getId(), suggestIndex.put(result.result()));
+                                results.add(new JsonObject()
+                                        .put("id", result.result().getId())
+                                        .put("status", 201));
+                            } else {
+                                results.add(new JsonObject()
+                                        .put("id", ((ConflictException) result.cause()).getId())
+                                        .put("status", 409)
+                                        .put("message", result.cause().getMessage()));
+                            }
+                        }
+                        searchCache.invalidate();
+                        log.debug("Batch of {} countries processed, replying with results", countries.size());
+                        message.reply(results.encode());
+                    } else if (async.cause() instanceof ConflictException) {
+                        log.debug("Conflict detected, failing batch with 409 failure");
+                        message.fail(409, "Conflict with concurrently created country, no countries created");
+                    } else {
+                        log.warn("Creating countries failed, failing with 500", async.cause());
+                        message.fail(500, async.cause().getLocalizedMessage());
+                    }
+                });
+    }
+
     private void getCountryHandler(Message<String> message) {
-        repository.getCountry(message.body())
+        Country cached = cache.get(message.body());
+        if (cached != null) {
+            log.debug("Found cached country = {}", cached);
+            message.reply(cached);
+            return;
+        }
+
+        long version = cache.version();
+        CountryRepository reads = cache.isEnabled() ? repository : reads(message);
+        gets.execute(source(reads) + ":" + version + ":" + message.body(), () -> reads.getCountry(message.body()))
                 .setHandler(response -> {
                     if (response.succeeded()) {
                         Country country = response.result();
                         if (country != null) {
                             log.debug("Found country = {}", country);
-                            message.reply(Json.encode(country));
+                            if (reads == repository) {
+                                cache.putIfUnchanged(country, version);
+                            }
+                            message.reply(country);
                         } else {
                             log.debug("Country not found");
                             message.reply(null);
@@ -69,31 +162,146 @@ public class CountryVerticle extends AbstractVerticle {
     }
 
     private void searchCountries(Message<String> message) {
-        repository.searchCountries()
+        CountryFilter filter = new CountryFilter(message.headers().get("name"), message.headers().get("capital"));
+        if (message.headers().contains("limit")) {
+            searchPage(message, filter);
+            return;
+        } else if (!filter.isEmpty()) {
+            searchFiltered(message, filter);
+            return;
+        }
+
+        CountrySearchCache.Result cached = searchCache.get();
+        if (cached != null) {
+            log.debug("Replying with cached search result, etag = {}", cached.getEtag());
+            replySearchResult(message, cached);
+            return;
+        }
+
+        long version = searchCache.version();
+        searches.execute(String.valueOf(version), () -> repository.searchCountries(CountryFilter.NONE))
+                .setHandler(async -> {
+                    if (async.succeeded()) {
+                        List<Country> countries = async.result();
+                        CountrySearchCache.Result result = CountrySearchCache.Result.of(
+                                countries.isEmpty() ? null : Json.encodeToBuffer(countries));
+                        searchCache.putIfUnchanged(result, version);
+                        replySearchResult(message, result);
+                    } else {
+                        log.warn("Search for countries failed, failing with 500", async.cause());
+                        message.fail(500, async.cause().getLocalizedMessage());
+                    }
+                });
+    }
+
+    /**
+     * Filtered searches bypass the search cache, which only holds the complete list.
+     */
+    private void searchFiltered(Message<String> message, CountryFilter filter) {
+        reads(message).searchCountries(filter)
                 .setHandler(async -> {
                     if (async.succeeded()) {
-                        if (async.result().size() > 0) {
-                            log.debug("Replying with {} countries", async.result().size());
-                            message.reply(Json.encode(async.result()));
+                        if (async.result().isEmpty()) {
+                            log.debug("No countries match {}, replying with null", filter);
+                            message.reply(null);
                         } else {
+                            log.debug("Replying with {} countries matching {}", async.result().size(), filter);
+                            message.reply(async.result(), new DeliveryOptions().setCodecName(CountryListCodec.NAME));
+                        }
+                    } else {
+                        log.warn("Filtered search for countries failed, failing with 500", async.cause());
+                        message.fail(500, async.cause().getLocalizedMessage());
+                    }
+                });
+    }
+
+    private void searchPage(Message<String> message, CountryFilter filter) {
+        int limit = Integer.parseInt(message.headers().get("limit"));
+        String after = message.headers().get("after");
+        reads(message).searchCountries(filter, limit, after != null ? CountryCursor.decode(after) : null)
+                .setHandler(async -> {
+                    if (async.succeeded()) {
+                        CountryPage page = async.result();
+                        if (page.getCountries().isEmpty()) {
                             log.debug("No countries found, replying with null");
                             message.reply(null);
+                        } else {
+                            log.debug("Replying with page of {} countries", page.getCountries().size());
+                            DeliveryOptions options = new DeliveryOptions()
+                                    .setCodecName(CountryListCodec.NAME);
+                            if (page.getNext() != null) {
+                                options.addHeader("next", page.getNext().encode());
+                            }
+                            message.reply(page.getCountries(), options);
                         }
                     } else {
-                        log.warn("Search for countries failed, failing with 500", async.cause());
+                        log.warn("Search for page of countries failed, failing with 500", async.cause());
                         message.fail(500, async.cause().getLocalizedMessage());
                     }
                 });
     }
 
-    private void updateCountry(Message<String> message) {
+    /**
+     * Replies with the cached search result, pre-compressed with gzip when the router passed an
+     * {@code accept-encoding} header so the list is compressed once per version instead of once per response. Results
+     * smaller than the router's {@code gzip-min-size} are sent uncompressed, gzip would only make them bigger.
+     */
+    private void replySearchResult(Message<String> message, CountrySearchCache.Result result) {
+        String minimumSize = message.headers().get("gzip-min-size");
+        boolean gzip = "gzip".equals(message.headers().get("accept-encoding")) && !result.isEmpty() &&
+                (minimumSize == null || result.getBody().length() >= Integer.parseInt(minimumSize));
+        if (result.isEmpty()) {
+            log.debug("No countries found, replying with null");
+            message.reply(null);
+        } else if (result.matches(message.headers().get("if-none-match"))) {
+            log.debug("Search result not modified, replying with etag only");
+            message.reply(null, new DeliveryOptions().addHeader("etag", gzip ? result.getGzippedEtag() : result.getEtag()));
+        } else if (gzip) {
+            log.debug("Replying with {} bytes of gzip compressed countries", result.gzipped().length());
+            message.reply(result.gzipped(), new DeliveryOptions()
+                    .addHeader("etag", result.getGzippedEtag())
+                    .addHeader("content-encoding", "gzip"));
+        } else {
+            log.debug("Replying with {} bytes of countries", result.getBody().length());
+            message.reply(result.getBody(), new DeliveryOptions().addHeader("etag", result.getEtag()));
+        }
+    }
+
+    /**
+     * Answers type-ahead queries from the suggest index, the database is not queried.
+     */
+    private void suggestCountries(Message<String> message) {
+        List<Country> suggestions = suggestIndex.suggest(message.body(), Integer.parseInt(message.headers().get("limit")));
+        if (suggestions.isEmpty()) {
+            log.debug("No suggestions for {}, replying with null", message.body());
+            message.reply(null);
+        } else {
+            log.debug("Replying with {} suggestions for {}", suggestions.size(), message.body());
+            message.reply(suggestions, new DeliveryOptions().setCodecName(CountryListCodec.NAME));
+        }
+    }
+
+    private void exportCountries(Message<String> message) {
+        message.reply(null);
+        new CountryExport(vertx.eventBus(), reads(message), message.body(),
+                config().getInteger("country.export.chunk-size", 100),
+                config().getInteger("country.export.window", 4),
+                config().getLong("country.export.ack-timeout", 300000L))
+                .start();
+    }
+
+    private void updateCountry(Message<Country> message) {
         log.debug("Received message to update country, message = {}", message);
-        Country update = Json.decodeValue(message.body(), Country.class);
+        Country update = message.body();
         repository.updateCountry(update)
                 .setHandler(result -> {
-                    if (result.succeeded()) { //todo do we need to check rows updated?
-                        message.reply(Json.encode(update));
+                    if (result.succeeded()) {
+                        cache.invalidate(update.getId());
+                        searchCache.invalidate();
+                        refreshSuggestion(update.getId(), suggestIndex.put(update));
+                        message.reply(update);
                     } else if (result.cause() instanceof EntityNotFoundException) {
+                        cache.invalidate(update.getId());
                         message.fail(404, "Country not found with id " + update.getId()); //todo decouple workers from http responses
                     } else {
                         message.fail(500, result.cause().getLocalizedMessage());
@@ -107,12 +315,33 @@ public class CountryVerticle extends AbstractVerticle {
         repository.deleteCountry(message.body())
                 .setHandler(response -> {
                     if (response.succeeded()) {
-                        message.reply(Json.encode(response.result()));
+                        cache.invalidate(id);
+                        searchCache.invalidate();
+                        refreshSuggestion(id, suggestIndex.remove(id));
+                        message.reply(response.result());
                     } else if (response.cause() instanceof EntityNotFoundException) {
+                        cache.invalidate(id);
                         message.fail(404, "Country not found with id " + id); //todo decouple workers from http responses
                     } else {
                         message.fail(500, response.cause().getLocalizedMessage());
                     }
                 });
     }
+
+    /**
+     * Write callbacks can complete out of commit order, so after indexing a write the row is re-read from the primary
+     * and indexed again unless a later write to the same id has been indexed since.
+     */
+    private void refreshSuggestion(String id, long version) {
+        repository.getCountry(id)
+                .setHandler(result -> {
+                    if (result.failed()) {
+                        log.warn("Re-reading country {} for the suggest index failed", id, result.cause());
+                    } else if (result.result() == null) {
+                        suggestIndex.removeIfUnchanged(id, version);
+                    } else {
+                        suggestIndex.putIfUnchanged(result.result(), version);
+                    }
+                });
+    }
 }
@@ -0,0 +1,153 @@
+package us.vanderlugt.sample.vertx.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Access log that keeps formatting and appending off the event loop, a finished request is captured into a
+ * {@link RingBuffer} and a single {@code access-log} worker thread drains every web verticle's buffer into the
+ * {@code us.vanderlugt.sample.vertx.web.AccessLog} logger.
+ *
+ * <p>Requests that failed with a 4xx or 5xx status are always logged, successful requests are sampled at
+ * {@code http.access-log.sample-rate}. When the worker falls behind and a buffer fills up entries are dropped and
+ * counted instead of slowing down requests.
+ */
+public class AccessLogHandler implements Handler<RoutingContext> {
+    private static final Logger ACCESS = LoggerFactory.getLogger("us.vanderlugt.sample.vertx.web.AccessLog");
+
+    private final double sampleRate;
+    private final RingBuffer<Entry> buffer;
+    private final Counter dropped;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    AccessLogHandler(double sampleRate, int bufferSize, MeterRegistry registry) {
+        this.sampleRate = sampleRate;
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.dropped = Counter.builder("http.access-log.dropped")
+                .description("Access log entries dropped because the log worker fell behind")
+                .register(registry);
+    }
+
+    /**
+     * Creates the access log handler of a web verticle from the {@code http.access-log.*} configuration and starts
+     * draining it, a handler that logs nothing when the access log is disabled.
+     */
+    public static Handler<RoutingContext> create(Vertx vertx, JsonObject config, MeterRegistry registry) {
+        if (!config.getBoolean("http.access-log.enabled", true)) {
+            return RoutingContext::next;
+        }
+        AccessLogHandler handler = new AccessLogHandler(
+                config.getDouble("http.access-log.sample-rate", 1.0),
+                config.getInteger("http.access-log.buffer-size", 8192),
+                registry);
+        WorkerExecutor worker = vertx.createSharedWorkerExecutor("access-log", 1);
+        vertx.setPeriodic(config.getLong("http.access-log.drain-interval", 100L), timer -> handler.drainOn(worker));
+        return handler;
+    }
+
+    @Override
+    public void handle(RoutingContext context) {
+        long start = System.currentTimeMillis();
+        context.addBodyEndHandler(none -> {
+            int status = context.response().getStatusCode();
+            if (status < 400 && sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+                return;
+            }
+            if (!buffer.offer(new Entry(context.request(), status, context.response().bytesWritten(), start))) {
+                dropped.increment();
+            }
+        });
+        context.next();
+    }
+
+    private void drainOn(WorkerExecutor worker) {
+        if (draining.compareAndSet(false, true)) {
+            worker.executeBlocking(promise -> {
+                drain();
+                promise.complete();
+            }, false, done -> draining.set(false));
+        }
+    }
+
+    void drain() {
+        Entry entry = buffer.poll();
+        while (entry != null) {
+            if (entry.status >= 500) {
+                ACCESS.error(entry.format());
+            } else if (entry.status >= 400) {
+                ACCESS.warn(entry.format());
+            } else {
+                ACCESS.info(entry.format());
+            }
+            entry = buffer.poll();
+        }
+    }
+
+    /**
+     * The parts of a finished request the log line needs, copied on the event loop and formatted on the log worker.
+     */
+    private static final class Entry {
+        private final String remote;
+        private final String method;
+        private final String uri;
+        private final String version;
+        private final int status;
+        private final long bytes;
+        private final long start;
+        private final long duration;
+        private final String referrer;
+        private final String userAgent;
+
+        private Entry(HttpServerRequest request, int status, long bytes, long start) {
+            this.remote = request.remoteAddress() == null ? "-" : request.remoteAddress().host();
+            this.method = request.rawMethod();
+            this.uri = request.uri();
+            this.version = version(request.version());
+            this.status = status;
+            this.bytes = bytes;
+            this.start = start;
+            this.duration = System.currentTimeMillis() - start;
+            this.referrer = header(request, "referer");
+            this.userAgent = header(request, "user-agent");
+        }
+
+        private static String version(HttpVersion version) {
+            if (version == HttpVersion.HTTP_1_0) {
+                return "HTTP/1.0";
+            } else if (version == HttpVersion.HTTP_1_1) {
+                return "HTTP/1.1";
+            } else if (version == HttpVersion.HTTP_2) {
+                return "HTTP/2.0";
+            } else {
+                return "-";
+            }
+        }
+
+        private static String header(HttpServerRequest request, String name) {
+            String value = request.headers().get(name);
+            return value == null ? "-" : value;
+        }
+
+        private String format() {
+            return remote + " - - [" +
+                    DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(start).atOffset(ZoneOffset.UTC)) +
+                    "] \"" + method + " " + uri + " " + version + "\" " + status + " " + bytes +
+                    " \"" + referrer + "\" \"" + userAgent + "\" " + duration + " ms";
+        }
+    }
+}
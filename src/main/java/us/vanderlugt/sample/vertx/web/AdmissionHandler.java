@@ -0,0 +1,87 @@
+package us.vanderlugt.sample.vertx.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+import static us.vanderlugt.sample.vertx.web.HttpStatus.SERVICE_UNAVAILABLE;
+
+/**
+ * Admits a request to its route while fewer requests than the route's {@link AimdLimit} are in flight and rejects it
+ * at once with 503 and {@code Retry-After} otherwise, so an overload is shed at the edge instead of queueing on the
+ * event bus and the connection pool until every request times out.
+ *
+ * <p>Install it as the first handler of a route so a rejected request body is never read. Responses with a 5xx status
+ * and responses slower than {@code http.admission.latency-threshold} lower the limit.
+ */
+@Slf4j
+public class AdmissionHandler implements Handler<RoutingContext> {
+    private final String route;
+    private final AimdLimit limit;
+    private final String retryAfter;
+    private final Counter rejected;
+
+    AdmissionHandler(String route, AimdLimit limit, int retryAfterSeconds, MeterRegistry registry) {
+        this.route = route;
+        this.limit = limit;
+        this.retryAfter = String.valueOf(retryAfterSeconds);
+        this.rejected = Counter.builder("http.server.rejected")
+                .description("Requests rejected by admission control")
+                .tag("route", route)
+                .register(registry);
+    }
+
+    /**
+     * Creates the admission handler of a route from the {@code http.admission.*} configuration, a handler that admits
+     * every request when admission control is disabled.
+     */
+    public static Handler<RoutingContext> create(JsonObject config, MeterRegistry registry, String route) {
+        if (!config.getBoolean("http.admission.enabled", false)) {
+            return RoutingContext::next;
+        }
+        return new AdmissionHandler(route, new AimdLimit(
+                config.getInteger("http.admission.initial-limit", 20),
+                config.getInteger("http.admission.min-limit", 1),
+                config.getInteger("http.admission.max-limit", 200),
+                TimeUnit.MILLISECONDS.toNanos(config.getLong("http.admission.latency-threshold", 250L)),
+                config.getDouble("http.admission.backoff", 0.9)),
+                config.getInteger("http.admission.retry-after", 1),
+                registry);
+    }
+
+    @Override
+    public void handle(RoutingContext context) {
+        if (!limit.tryAcquire()) {
+            log.debug("Rejecting request to {}, {} requests in flight", route, limit.getInFlight());
+            rejected.increment();
+            context.response()
+                    .setStatusCode(SERVICE_UNAVAILABLE.getCode())
+                    .putHeader("Retry-After", retryAfter)
+                    .end(new JsonObject()
+                            .put("message", "Too many concurrent requests, retry later")
+                            .encode());
+            return;
+        }
+
+        long start = System.nanoTime();
+        Handler<Void> release = new Handler<>() {
+            private boolean released;
+
+            @Override
+            public void handle(Void none) {
+                if (!released) {
+                    released = true;
+                    limit.release(System.nanoTime() - start, context.response().getStatusCode() >= 500);
+                }
+            }
+        };
+        context.addBodyEndHandler(release);
+        context.response().closeHandler(release);
+        context.next();
+    }
+}
@@ -0,0 +1,49 @@
+package us.vanderlugt.sample.vertx.web;
+
+import lombok.Getter;
+
+/**
+ * Additive increase, multiplicative decrease limit on concurrent requests.
+ *
+ * <p>A request that completed within the latency threshold while at least half the limit was in use raises the limit
+ * by one, a request that failed or took longer multiplies it by the backoff. Not thread safe, a limit belongs to the
+ * event loop of one router.
+ */
+public class AimdLimit {
+    private final int minimum;
+    private final int maximum;
+    private final long latencyThresholdNanos;
+    private final double backoff;
+    private double limit;
+    @Getter
+    private int inFlight;
+
+    public AimdLimit(int initial, int minimum, int maximum, long latencyThresholdNanos, double backoff) {
+        this.minimum = minimum;
+        this.maximum = maximum;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.backoff = backoff;
+        this.limit = Math.max(minimum, Math.min(maximum, initial));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public boolean tryAcquire() {
+        if (inFlight >= getLimit()) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    public void release(long latencyNanos, boolean failed) {
+        if (failed || latencyNanos > latencyThresholdNanos) {
+            limit = Math.max(minimum, limit * backoff);
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maximum, limit + 1);
+        }
+        inFlight--;
+    }
+}
@@ -0,0 +1,57 @@
+package us.vanderlugt.sample.vertx.web;
+
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Keeps responses smaller than the minimum size out of the server's gzip and deflate compression and marks every
+ * response as varying by {@code Accept-Encoding}.
+ *
+ * <p>The server compresses any response without a {@code Content-Encoding}, so a small response is sent as
+ * {@code identity} and a handler that ends a response with a body it compressed itself sets the encoding it used, it
+ * should only do so for bodies of at least {@link #getMinimumSize()} bytes.
+ */
+@RequiredArgsConstructor
+public class CompressionHandler implements Handler<RoutingContext> {
+    private final boolean enabled;
+    @Getter
+    private final int minimumSize;
+
+    @Override
+    public void handle(RoutingContext context) {
+        if (enabled) {
+            context.addHeadersEndHandler(none -> {
+                MultiMap headers = context.response().headers();
+                String length = headers.get(HttpHeaders.CONTENT_LENGTH);
+                if (!headers.contains(HttpHeaders.CONTENT_ENCODING) && length != null && Long.parseLong(length) < minimumSize) {
+                    headers.set(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+                }
+                headers.add("Vary", "Accept-Encoding");
+            });
+        }
+        context.next();
+    }
+
+    /**
+     * Whether a pre-compressed gzip body may be sent, {@code Accept-Encoding} quality values of zero are refusals.
+     */
+    public boolean acceptsGzip(HttpServerRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (!enabled || acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim();
+            if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+                return parameters.length < 2 || !parameters[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
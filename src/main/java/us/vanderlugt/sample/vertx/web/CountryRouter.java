@@ -1,9 +1,17 @@
 package us.vanderlugt.sample.vertx.web;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.http.Cookie;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
@@ -11,34 +19,88 @@ import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.api.validation.HTTPRequestValidationHandler;
 import io.vertx.ext.web.api.validation.ValidationException;
 import io.vertx.ext.web.handler.BodyHandler;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import us.vanderlugt.sample.vertx.metrics.Metrics;
 import us.vanderlugt.sample.vertx.model.country.Country;
+import us.vanderlugt.sample.vertx.model.country.CountryCodec;
+import us.vanderlugt.sample.vertx.model.country.CountryCursor;
+import us.vanderlugt.sample.vertx.model.country.CountryListCodec;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
 import static io.vertx.ext.web.api.validation.ValidationException.ErrorType.JSON_INVALID;
 import static us.vanderlugt.sample.vertx.web.HttpStatus.*;
 
 @Slf4j
+@RequiredArgsConstructor
 public class CountryRouter {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int DEFAULT_SUGGESTIONS = 10;
+    private static final int MAX_SUGGESTIONS = 50;
+    private static final Pattern COUNTRY_ID = Pattern.compile("[A-Z]{2}");
+    private static final String COUNTRY = "country";
+    private static final String COUNTRIES = "countries";
+    private static final String[] FILTERS = {"name", "capital"};
+    private static final String READ_PRIMARY_UNTIL = "read-primary-until";
+
+    private final MeterRegistry registry;
+    private final CompressionHandler compression;
+    private final JsonObject config;
+
     public Router routes(Vertx vertx) {
+        CountryCodec.register(vertx.eventBus());
         Router router = Router.router(vertx);
         router.route("/*").handler(context -> {
             context.response().putHeader("Content-Type", "application/json; charset=utf-8");
             context.next();
         });
+        router.route().handler(new HttpMetricsHandler(registry));
         router.post("/country")
+                .handler(admission("POST /country"))
                 .handler(BodyHandler.create())
                 .handler(HTTPRequestValidationHandler.create()
                         .addCustomValidatorFunction(context -> validateCountry(context, true)))
                 .handler(context -> create(vertx, context))
                 .failureHandler(this::validationErrorHandler);
+        router.post("/country/batch")
+                .handler(admission("POST /country/batch"))
+                .handler(BodyHandler.create())
+                .handler(HTTPRequestValidationHandler.create()
+                        .addCustomValidatorFunction(this::validateCountries))
+                .handler(context -> createBatch(vertx, context))
+                .failureHandler(this::validationErrorHandler);
+        router.get("/country/export")
+                .handler(context -> export(vertx, context));
+        router.get("/country/suggest")
+                .handler(admission("GET /country/suggest"))
+                .handler(HTTPRequestValidationHandler.create()
+                        .addCustomValidatorFunction(this::validateSuggest))
+                .handler(context -> suggest(vertx, context))
+                .failureHandler(this::validationErrorHandler);
         router.get("/country/:id")
+                .handler(admission("GET /country/:id"))
                 .handler(HTTPRequestValidationHandler.create()
                         .addPathParamWithPattern("id", "[A-Z]{2}"))
                 .handler(context -> get(vertx, context))
                 .failureHandler(this::validationErrorHandler);
         router.get("/country")
-                .handler(context -> search(vertx, context));
+                .handler(admission("GET /country"))
+                .handler(HTTPRequestValidationHandler.create()
+                        .addCustomValidatorFunction(this::validatePage))
+                .handler(context -> search(vertx, context))
+                .failureHandler(this::validationErrorHandler);
         router.put("/country/:id")
+                .handler(admission("PUT /country/:id"))
                 .handler(BodyHandler.create())
                 .handler(HTTPRequestValidationHandler.create()
                         .addPathParamWithPattern("id", "[A-Z]{2}")
@@ -46,6 +108,7 @@ public class CountryRouter {
                 .handler(context -> update(vertx, context))
                 .failureHandler(this::validationErrorHandler);
         router.delete("/country/:id")
+                .handler(admission("DELETE /country/:id"))
                 .handler(HTTPRequestValidationHandler.create()
                         .addPathParamWithPattern("id", "[A-Z]{2}"))
                 .handler(context -> deleteCountry(vertx, context))
@@ -53,6 +116,42 @@ public class CountryRouter {
         return router;
     }
 
+    private Handler<RoutingContext> admission(String route) {
+        return AdmissionHandler.create(config, registry, route);
+    }
+
+    /**
+     * After a write the caller gets a cookie that sends its reads to the primary database for
+     * {@code jdbc.read.read-your-writes} milliseconds, long enough for a read replica to catch up with the write.
+     */
+    private void wrote(RoutingContext context) {
+        long readYourWrites = config.getLong("jdbc.read.read-your-writes", 0L);
+        if (readYourWrites > 0) {
+            String until = String.valueOf(System.currentTimeMillis() + readYourWrites);
+            context.response().addCookie(Cookie.cookie(READ_PRIMARY_UNTIL, until)
+                    .setPath("/")
+                    .setMaxAge(TimeUnit.MILLISECONDS.toSeconds(readYourWrites) + 1)
+                    .setHttpOnly(true));
+        }
+    }
+
+    /**
+     * Marks a read with {@code consistency: primary} while the caller's read-your-writes cookie is current.
+     */
+    private static DeliveryOptions reads(RoutingContext context, DeliveryOptions options) {
+        Cookie cookie = context.request().getCookie(READ_PRIMARY_UNTIL);
+        if (cookie != null) {
+            try {
+                if (Long.parseLong(cookie.getValue()) > System.currentTimeMillis()) {
+                    options.addHeader("consistency", "primary");
+                }
+            } catch (NumberFormatException exception) {
+                log.debug("Ignoring malformed {} cookie {}", READ_PRIMARY_UNTIL, cookie.getValue());
+            }
+        }
+        return options;
+    }
+
     private void validationErrorHandler(RoutingContext context) {
         Throwable failure = context.failure();
         if (failure instanceof ValidationException) {
@@ -63,14 +162,23 @@ public class CountryRouter {
         }
     }
 
+    /**
+     * Decodes and validates the country in the request body, the valid country is put on the context for the handlers
+     * that follow so the body is only decoded once.
+     */
     private void validateCountry(RoutingContext context, boolean requireId) throws ValidationException {
-        Country country = Json.decodeValue(context.getBodyAsString(), Country.class);
-        if (requireId && country.getId() == null) {
+        context.put(COUNTRY, decodeCountry(context.getBody(), requireId));
+    }
+
+    private static void validateCountry(Country country, boolean requireId) throws ValidationException {
+        if (country == null) {
+            throw new ValidationException("Country is required", JSON_INVALID);
+        } else if (requireId && country.getId() == null) {
             throw new ValidationException("Country ID is required");
         } else if (country.getId() != null) {
             if (country.getId().length() != 2) {
                 throw new ValidationException("Country ID must be exactly 2 characters long, refer to ISO-3166");
-            } else if (!country.getId().matches("[A-Z]{2}")) {
+            } else if (!COUNTRY_ID.matcher(country.getId()).matches()) {
                 throw new ValidationException("Country ID must match pattern [A-Z]{2}");
             }
         }
@@ -88,35 +196,136 @@ public class CountryRouter {
         }
     }
 
+    /**
+     * Decodes and validates a country request body, package private so the validation benchmark can call it.
+     */
+    static Country decodeCountry(Buffer body, boolean requireId) throws ValidationException {
+        Country country;
+        try {
+            country = Json.decodeValue(body, Country.class);
+        } catch (DecodeException exception) {
+            throw new ValidationException("Request body must be a country", JSON_INVALID);
+        }
+        validateCountry(country, requireId);
+        return country;
+    }
+
+    private void validateCountries(RoutingContext context) throws ValidationException {
+        Country[] countries;
+        try {
+            countries = Json.decodeValue(context.getBody(), Country[].class);
+        } catch (DecodeException exception) {
+            throw new ValidationException("Request body must be an array of countries", JSON_INVALID);
+        }
+        if (countries == null || countries.length < 1 || countries.length > MAX_BATCH_SIZE) {
+            throw new ValidationException("Batch must contain between 1 and " + MAX_BATCH_SIZE + " countries", JSON_INVALID);
+        }
+        for (int index = 0; index < countries.length; index++) {
+            try {
+                validateCountry(countries[index], true);
+            } catch (ValidationException exception) {
+                throw new ValidationException("Country at index " + index + ": " + exception.getMessage(), JSON_INVALID);
+            }
+        }
+        context.put(COUNTRIES, Arrays.asList(countries));
+    }
+
+    private void validatePage(RoutingContext context) throws ValidationException {
+        String limit = context.request().getParam("limit");
+        String after = context.request().getParam("after");
+        if (limit != null) {
+            try {
+                int size = Integer.parseInt(limit);
+                if (size < 1 || size > MAX_PAGE_SIZE) {
+                    throw new ValidationException("Page limit must be between 1 and " + MAX_PAGE_SIZE);
+                }
+            } catch (NumberFormatException exception) {
+                throw new ValidationException("Page limit must be a number");
+            }
+        }
+        for (String filter : FILTERS) {
+            String prefix = context.request().getParam(filter);
+            if (prefix != null && (prefix.length() < 1 || prefix.length() > 100)) {
+                throw new ValidationException("Country " + filter + " prefix must be between 1 and 100 characters long");
+            }
+        }
+        if (after != null) {
+            try {
+                CountryCursor.decode(after);
+            } catch (IllegalArgumentException exception) {
+                throw new ValidationException("Invalid page cursor " + after);
+            }
+        }
+    }
+
+    private void validateSuggest(RoutingContext context) throws ValidationException {
+        String query = context.request().getParam("q");
+        String limit = context.request().getParam("limit");
+        if (query == null || query.length() < 1 || query.length() > 100) {
+            throw new ValidationException("Suggest query q must be between 1 and 100 characters long");
+        }
+        if (limit != null) {
+            try {
+                int size = Integer.parseInt(limit);
+                if (size < 1 || size > MAX_SUGGESTIONS) {
+                    throw new ValidationException("Suggest limit must be between 1 and " + MAX_SUGGESTIONS);
+                }
+            } catch (NumberFormatException exception) {
+                throw new ValidationException("Suggest limit must be a number");
+            }
+        }
+    }
+
     private void create(Vertx vertx, RoutingContext context) {
         vertx.eventBus()
                 .request("us.vanderlugt.country.create",
-                        context.getBodyAsString(),
-                        (AsyncResult<Message<String>> response) -> {
+                        context.<Country>get(COUNTRY),
+                        timed("us.vanderlugt.country.create", (AsyncResult<Message<Country>> response) -> {
                             if (response.succeeded()) {
                                 log.debug("Country successfully created: {}", response.result().body());
+                                wrote(context);
                                 context.response()
                                         .setStatusCode(CREATED.getCode())
+                                        .end(Json.encodeToBuffer(response.result().body()));
+                            } else if (response.cause() instanceof ReplyException) {
+                                handleReplyException(context, (ReplyException) response.cause());
+                            } else {
+                                handleUnexpectedException(context, response.cause());
+                            }
+                        }));
+    }
+
+    private void createBatch(Vertx vertx, RoutingContext context) {
+        vertx.eventBus()
+                .request("us.vanderlugt.country.batch",
+                        context.<List<Country>>get(COUNTRIES),
+                        new DeliveryOptions().setCodecName(CountryListCodec.NAME),
+                        timed("us.vanderlugt.country.batch", (AsyncResult<Message<String>> response) -> {
+                            if (response.succeeded()) {
+                                log.debug("Country batch processed: {}", response.result().body());
+                                wrote(context);
+                                context.response()
+                                        .setStatusCode(OK.getCode())
                                         .end(response.result().body());
                             } else if (response.cause() instanceof ReplyException) {
                                 handleReplyException(context, (ReplyException) response.cause());
                             } else {
                                 handleUnexpectedException(context, response.cause());
                             }
-                        });
+                        }));
     }
 
     private void get(Vertx vertx, RoutingContext context) {
         String id = context.pathParam("id");
         vertx.eventBus()
-                .request("us.vanderlugt.country.get", id,
-                        (AsyncResult<Message<String>> response) -> {
+                .request("us.vanderlugt.country.get", id, reads(context, new DeliveryOptions()),
+                        timed("us.vanderlugt.country.get", (AsyncResult<Message<Country>> response) -> {
                             if (response.succeeded()) {
-                                Message<String> message = response.result();
+                                Message<Country> message = response.result();
                                 if (message.body() != null) {
                                     context.response()
                                             .setStatusCode(OK.getCode())
-                                            .end(message.body());
+                                            .end(Json.encodeToBuffer(message.body()));
                                 } else {
                                     context.response()
                                             .setStatusCode(NOT_FOUND.getCode())
@@ -127,19 +336,89 @@ public class CountryRouter {
                             } else {
                                 handleUnexpectedException(context, response.cause());
                             }
-                        });
+                        }));
     }
 
     private void search(Vertx vertx, RoutingContext context) {
+        DeliveryOptions options = reads(context, new DeliveryOptions());
+        String ifNoneMatch = context.request().getHeader("If-None-Match");
+        String limit = context.request().getParam("limit");
+        String after = context.request().getParam("after");
+        StringBuilder filters = new StringBuilder();
+        for (String filter : FILTERS) {
+            String prefix = context.request().getParam(filter);
+            if (prefix != null) {
+                options.addHeader(filter, prefix);
+                filters.append('&').append(filter).append('=').append(URLEncoder.encode(prefix, StandardCharsets.UTF_8));
+            }
+        }
+        if (limit != null || after != null) {
+            options.addHeader("limit", limit != null ? limit : String.valueOf(DEFAULT_PAGE_SIZE));
+            if (after != null) {
+                options.addHeader("after", after);
+            }
+        } else if (filters.length() == 0) {
+            if (ifNoneMatch != null) {
+                options.addHeader("if-none-match", ifNoneMatch);
+            }
+            if (compression.acceptsGzip(context.request())) {
+                options.addHeader("accept-encoding", "gzip")
+                        .addHeader("gzip-min-size", String.valueOf(compression.getMinimumSize()));
+            }
+        }
         vertx.eventBus()
-                .request("us.vanderlugt.country.search", null,
-                        (AsyncResult<Message<String>> response) -> {
+                .request("us.vanderlugt.country.search", null, options,
+                        timed("us.vanderlugt.country.search", (AsyncResult<Message<Object>> response) -> {
                             if (response.succeeded()) {
-                                Message<String> message = response.result();
+                                Message<Object> message = response.result();
+                                String etag = message.headers().get("etag");
+                                String next = message.headers().get("next");
+                                String contentEncoding = message.headers().get("content-encoding");
                                 if (message.body() != null) {
+                                    if (etag != null) {
+                                        context.response().putHeader("ETag", etag);
+                                    }
+                                    if (contentEncoding != null) {
+                                        context.response().putHeader("Content-Encoding", contentEncoding);
+                                    }
+                                    if (next != null) {
+                                        context.response().putHeader("Link", "<" + context.request().path() +
+                                                "?limit=" + options.getHeaders().get("limit") +
+                                                "&after=" + next + filters + ">; rel=\"next\"");
+                                    }
+                                    context.response()
+                                            .setStatusCode(OK.getCode())
+                                            .end(message.body() instanceof Buffer ?
+                                                    (Buffer) message.body() :
+                                                    Json.encodeToBuffer(message.body()));
+                                } else if (etag != null) {
+                                    context.response()
+                                            .setStatusCode(NOT_MODIFIED.getCode())
+                                            .putHeader("ETag", etag)
+                                            .end();
+                                } else {
+                                    context.response()
+                                            .setStatusCode(NO_CONTENT.getCode())
+                                            .end();
+                                }
+                            } else {
+                                handleUnexpectedException(context, response.cause());
+                            }
+                        }));
+    }
+
+    private void suggest(Vertx vertx, RoutingContext context) {
+        String limit = context.request().getParam("limit");
+        vertx.eventBus()
+                .request("us.vanderlugt.country.suggest",
+                        context.request().getParam("q"),
+                        new DeliveryOptions().addHeader("limit", limit != null ? limit : String.valueOf(DEFAULT_SUGGESTIONS)),
+                        timed("us.vanderlugt.country.suggest", (AsyncResult<Message<List<Country>>> response) -> {
+                            if (response.succeeded()) {
+                                if (response.result().body() != null) {
                                     context.response()
                                             .setStatusCode(OK.getCode())
-                                            .end(message.body());
+                                            .end(Json.encodeToBuffer(response.result().body()));
                                 } else {
                                     context.response()
                                             .setStatusCode(NO_CONTENT.getCode())
@@ -148,45 +427,107 @@ public class CountryRouter {
                             } else {
                                 handleUnexpectedException(context, response.cause());
                             }
-                        });
+                        }));
+    }
+
+    private void export(Vertx vertx, RoutingContext context) {
+        HttpServerResponse response = context.response();
+        String address = "us.vanderlugt.country.export." + UUID.randomUUID();
+        MessageConsumer<Buffer> consumer = vertx.eventBus().consumer(address);
+        AtomicReference<Message<Buffer>> pending = new AtomicReference<>();
+        response.closeHandler(none -> {
+            log.debug("Export client disconnected, cancelling export {}", address);
+            consumer.unregister();
+            Message<Buffer> message = pending.getAndSet(null);
+            if (message != null) {
+                message.fail(500, "Client disconnected");
+            }
+        });
+        consumer.handler(message -> {
+            if (message.headers().contains("error")) {
+                consumer.unregister();
+                if (response.headWritten()) {
+                    log.warn("Export failed after response started, closing connection: {}", message.headers().get("error"));
+                    response.close();
+                } else {
+                    handleUnexpectedException(context, new IllegalStateException(message.headers().get("error")));
+                }
+                return;
+            }
+            if (!response.headWritten()) {
+                response.setChunked(true)
+                        .putHeader("Content-Type", "application/x-ndjson; charset=utf-8");
+            }
+            if (message.headers().contains("end")) {
+                consumer.unregister();
+                response.end();
+            } else {
+                response.write(message.body());
+                if (response.writeQueueFull()) {
+                    pending.set(message);
+                    response.drainHandler(none -> {
+                        Message<Buffer> drained = pending.getAndSet(null);
+                        if (drained != null) {
+                            drained.reply(null);
+                        }
+                    });
+                } else {
+                    message.reply(null);
+                }
+            }
+        });
+        consumer.completionHandler(registered -> vertx.eventBus()
+                .request("us.vanderlugt.country.export", address, reads(context, new DeliveryOptions()),
+                        timed("us.vanderlugt.country.export", started -> {
+                            if (started.failed()) {
+                                consumer.unregister();
+                                handleUnexpectedException(context, started.cause());
+                            }
+                        })));
     }
 
     private void update(Vertx vertx, RoutingContext context) {
-        Country country = Json.decodeValue(context.getBodyAsString(), Country.class);
+        Country country = context.get(COUNTRY);
         country.setId(context.pathParam("id"));
         vertx.eventBus()
                 .request("us.vanderlugt.country.update",
-                        Json.encode(country),
-                        (AsyncResult<Message<String>> response) -> {
+                        country,
+                        timed("us.vanderlugt.country.update", (AsyncResult<Message<Country>> response) -> {
                             if (response.succeeded()) {
                                 log.debug("Country successfully updated: {}", response.result().body());
+                                wrote(context);
                                 context.response()
                                         .setStatusCode(OK.getCode())
-                                        .end(response.result().body());
+                                        .end(Json.encodeToBuffer(response.result().body()));
                             } else if (response.cause() instanceof ReplyException) {
                                 handleReplyException(context, (ReplyException) response.cause());
                             } else {
                                 handleUnexpectedException(context, response.cause());
                             }
-                        });
+                        }));
     }
 
     private void deleteCountry(Vertx vertx, RoutingContext context) {
         vertx.eventBus()
                 .request("us.vanderlugt.country.delete",
                         context.pathParam("id"),
-                        (AsyncResult<Message<String>> response) -> {
+                        timed("us.vanderlugt.country.delete", (AsyncResult<Message<Country>> response) -> {
                             if (response.succeeded()) {
                                 log.debug("Country successfully deleted: {}", response.result().body());
+                                wrote(context);
                                 context.response()
                                         .setStatusCode(OK.getCode())
-                                        .end(response.result().body());
+                                        .end(Json.encodeToBuffer(response.result().body()));
                             } else if (response.cause() instanceof ReplyException) {
                                 handleReplyException(context, (ReplyException) response.cause());
                             } else {
                                 handleUnexpectedException(context, response.cause());
                             }
-                        });
+                        }));
+    }
+
+    private <T> Handler<AsyncResult<Message<T>>> timed(String address, Handler<AsyncResult<Message<T>>> handler) {
+        return Metrics.timed(registry, address, handler);
     }
 
     private void handleReplyException(RoutingContext context, ReplyException exception) {
@@ -0,0 +1,54 @@
+package us.vanderlugt.sample.vertx.web;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Handler;
+import io.vertx.ext.web.Route;
+import io.vertx.ext.web.RoutingContext;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every request by method, route path and status.
+ *
+ * <p>Install it on the root router and on each sub router, the innermost routing context it sees decides the route so
+ * {@code /api/country/BM} is recorded as {@code /api/country/:id}.
+ */
+@RequiredArgsConstructor
+public class HttpMetricsHandler implements Handler<RoutingContext> {
+    private static final String ROUTED = "metrics.routed";
+
+    private final MeterRegistry registry;
+
+    @Override
+    public void handle(RoutingContext context) {
+        if (context.get(ROUTED) == null) {
+            long start = System.nanoTime();
+            context.addBodyEndHandler(none -> record(context, start));
+        }
+        context.put(ROUTED, context);
+        context.next();
+    }
+
+    private void record(RoutingContext context, long start) {
+        RoutingContext routed = context.get(ROUTED);
+        Timer.builder("http.server.requests")
+                .description("HTTP request latency by route")
+                .tag("method", context.request().rawMethod())
+                .tag("route", route(routed))
+                .tag("status", String.valueOf(context.response().getStatusCode()))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private static String route(RoutingContext routed) {
+        Route route = routed.currentRoute();
+        if (route == null || route.getPath() == null) {
+            return "unmatched";
+        }
+        String mountPoint = routed.mountPoint();
+        return mountPoint == null ? route.getPath() : mountPoint + route.getPath();
+    }
+}
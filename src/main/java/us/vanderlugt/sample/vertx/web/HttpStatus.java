@@ -13,6 +13,8 @@ public enum HttpStatus {
     NON_AUTHORITATIVE_INFO("Non-Authoritative Information", 203),
     NO_CONTENT("No Content", 204),
 
+    NOT_MODIFIED("Not Modified", 304),
+
     BAD_REQUEST("Bad Request", 400),
     UNAUTHORIZED("Unauthorized", 401),
     FORBIDDEN("Forbidden", 403),
@@ -0,0 +1,61 @@
+package us.vanderlugt.sample.vertx.web;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and one consumer, a ring of slots each stamped with the sequence number
+ * it may next be written or read at.
+ *
+ * <p>{@link #offer(Object)} never blocks, it returns {@code false} when the ring is full so a slow consumer costs
+ * dropped elements instead of stalled producers. Only one thread at a time may {@link #poll()}.
+ */
+class RingBuffer<T> {
+    private final int mask;
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    RingBuffer(int minimumCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(minimumCapacity - 1, 1)) << 1;
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            sequences.set(slot, slot);
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    boolean offer(T element) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long available = sequences.get(slot) - position;
+            if (available < 0) {
+                return false;
+            } else if (available == 0 && tail.compareAndSet(position, position + 1)) {
+                elements.lazySet(slot, element);
+                sequences.lazySet(slot, position + 1);
+                return true;
+            }
+        }
+    }
+
+    T poll() {
+        int slot = (int) head & mask;
+        if (sequences.get(slot) != head + 1) {
+            return null;
+        }
+        final T element = elements.get(slot);
+        elements.lazySet(slot, null);
+        sequences.lazySet(slot, head + mask + 1);
+        head++;
+        return element;
+    }
+}
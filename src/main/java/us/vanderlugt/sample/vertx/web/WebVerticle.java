@@ -1,11 +1,16 @@
 package us.vanderlugt.sample.vertx.web;
 
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
+import io.vertx.core.http.Http2Settings;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.net.PfxOptions;
 import io.vertx.ext.web.Router;
-import io.vertx.ext.web.handler.LoggerHandler;
 import lombok.extern.slf4j.Slf4j;
+import us.vanderlugt.sample.vertx.metrics.Metrics;
 
 import static us.vanderlugt.sample.vertx.web.HttpStatus.OK;
 
@@ -14,9 +19,13 @@ public class WebVerticle extends AbstractVerticle {
     @Override
     public void start(Promise<Void> start) {
         log.debug("Starting Web verticle");
-        vertx.createHttpServer()
-                .requestHandler(routes()
-                .mountSubRouter("/api", new CountryRouter().routes(vertx)))
+        PrometheusMeterRegistry registry = Metrics.registry(vertx);
+        CompressionHandler compression = new CompressionHandler(
+                config().getBoolean("http.compression", true),
+                config().getInteger("http.compression.min-size", 1024));
+        vertx.createHttpServer(serverOptions())
+                .requestHandler(routes(registry, compression)
+                .mountSubRouter("/api", new CountryRouter(registry, compression, config()).routes(vertx)))
                 .listen(config().getInteger("http.port", 8008), //todo externalize port
                         result -> {
                             if (result.succeeded()) {
@@ -29,13 +38,45 @@ public class WebVerticle extends AbstractVerticle {
                         });
     }
 
-    private Router routes() {
+    /**
+     * With {@code http.tls} HTTP/2 is offered through ALPN only when {@code http.http2} is set, without TLS the server
+     * always accepts h2c, by upgrade or with prior knowledge, next to HTTP/1.1.
+     */
+    private HttpServerOptions serverOptions() {
+        HttpServerOptions options = new HttpServerOptions()
+                .setCompressionSupported(config().getBoolean("http.compression", true))
+                .setCompressionLevel(config().getInteger("http.compression.level", 6))
+                .setInitialSettings(new Http2Settings()
+                        .setMaxConcurrentStreams(config().getLong("http.http2.max-concurrent-streams", 100L))
+                        .setInitialWindowSize(config().getInteger("http.http2.initial-window-size",
+                                Http2Settings.DEFAULT_INITIAL_WINDOW_SIZE)))
+                .setHttp2ConnectionWindowSize(config().getInteger("http.http2.connection-window-size",
+                        HttpServerOptions.DEFAULT_HTTP2_CONNECTION_WINDOW_SIZE))
+                .setSendBufferSize(config().getInteger("http.send-buffer-size", HttpServerOptions.DEFAULT_SEND_BUFFER_SIZE));
+        if (config().getBoolean("http.tls", false)) {
+            options.setSsl(true)
+                    .setUseAlpn(config().getBoolean("http.http2", false))
+                    .setPfxKeyCertOptions(new PfxOptions()
+                            .setPath(config().getString("http.tls.keystore"))
+                            .setPassword(config().getString("http.tls.keystore-password")));
+        }
+        return options;
+    }
+
+    private Router routes(PrometheusMeterRegistry registry, CompressionHandler compression) {
         Router router = Router.router(vertx);
-        router.route().handler(LoggerHandler.create());
+        router.route().handler(new HttpMetricsHandler(registry));
+        router.route().handler(compression);
+        router.route().handler(AccessLogHandler.create(vertx, config(), registry));
         router.get("/").handler(context ->
                 context.response()
                         .setStatusCode(OK.getCode())
                         .end("Welcome!"));
+        router.get("/metrics").handler(context ->
+                context.response()
+                        .setStatusCode(OK.getCode())
+                        .putHeader("Content-Type", TextFormat.CONTENT_TYPE_004)
+                        .end(registry.scrape()));
         return router;
     }
 }
@@ -0,0 +1,121 @@
+package us.vanderlugt.sample.vertx;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Launcher;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.ext.web.codec.BodyCodec;
+import io.vertx.junit5.Timeout;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import us.vanderlugt.sample.vertx.model.country.Country;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static us.vanderlugt.sample.vertx.TestMainVerticle.randomPort;
+
+/**
+ * Runs a repository node in a second JVM and a web node in the test JVM, clustered on localhost, so every request
+ * crosses the clustered event bus.
+ */
+@ExtendWith(VertxExtension.class)
+public class TestClusteredMainVerticle {
+    private static final int CREATE_ATTEMPTS = 120;
+
+    private Process repositoryNode;
+    private Vertx webNode;
+
+    @AfterEach
+    void shutdown(VertxTestContext context) throws Exception {
+        if (repositoryNode != null) {
+            repositoryNode.destroy();
+            repositoryNode.waitFor(30, TimeUnit.SECONDS);
+        }
+        if (webNode != null) {
+            webNode.close(context.succeeding(closed -> context.completeNow()));
+        } else {
+            context.completeNow();
+        }
+    }
+
+    @Test
+    @Timeout(value = 2, timeUnit = TimeUnit.MINUTES)
+    void testWebAndRepositoryNodes(VertxTestContext context) throws Exception {
+        repositoryNode = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                Launcher.class.getName(), "run", MainVerticle.class.getName(),
+                "-cluster", "-cluster-host", "127.0.0.1",
+                "-conf", new JsonObject()
+                        .put("node.role", "repository")
+                        .put("country.instances", 1)
+                        .put("jdbc.url", "jdbc:h2:mem:cluster;DB_CLOSE_DELAY=-1")
+                        .encode())
+                .inheritIO()
+                .start();
+
+        int port = randomPort();
+        VertxOptions options = new VertxOptions().setClusterManager(new HazelcastClusterManager());
+        options.getEventBusOptions()
+                .setClustered(true)
+                .setHost("127.0.0.1");
+        Vertx.clusteredVertx(options, context.succeeding(clustered -> {
+            webNode = clustered;
+            WebClient client = WebClient.create(clustered, new WebClientOptions()
+                    .setDefaultHost("localhost")
+                    .setDefaultPort(port));
+            clustered.deployVerticle(MainVerticle::new, new DeploymentOptions()
+                            .setConfig(new JsonObject()
+                                    .put("node.role", "web")
+                                    .put("http.instances", 1)
+                                    .put("http.port", port)),
+                    context.succeeding(id -> created(clustered, client, new Country("NZ", "New Zealand", "Wellington"), CREATE_ATTEMPTS)
+                            .setHandler(context.succeeding(none -> client.get("/api/country/NZ")
+                                    .as(BodyCodec.json(Country.class))
+                                    .send(context.succeeding(response -> {
+                                        context.verify(() -> {
+                                            assertThat(response.statusCode(), equalTo(200));
+                                            assertThat(response.body().getCapital(), equalTo("Wellington"));
+                                        });
+                                        context.completeNow();
+                                    }))))));
+        }));
+    }
+
+    /**
+     * Creates the country, retrying every 500 ms while the repository node has not yet joined the cluster, which the
+     * web node reports as a 500 without handlers for the create address. A 409 means an earlier attempt that timed out
+     * created it.
+     */
+    private Future<Void> created(Vertx vertx, WebClient client, Country country, int attempts) {
+        return Future.<HttpResponse<Buffer>>future(promise -> client.post("/api/country").sendJson(country, promise))
+                .compose(response -> {
+                    if (response.statusCode() == 201 || response.statusCode() == 409) {
+                        return Future.succeededFuture();
+                    } else if (!repositoryNode.isAlive()) {
+                        return Future.failedFuture(new IllegalStateException(
+                                "Repository node exited with " + repositoryNode.exitValue()));
+                    } else if (response.statusCode() != 500 || !String.valueOf(response.bodyAsString()).contains("No handlers")) {
+                        return Future.failedFuture(new IllegalStateException(
+                                "Creating " + country.getId() + " failed with " + response.statusCode() + " " + response.bodyAsString()));
+                    } else if (attempts <= 1) {
+                        return Future.failedFuture(new IllegalStateException("Repository node did not join the cluster"));
+                    }
+                    return Future.<Long>future(promise -> vertx.setTimer(500, promise::complete))
+                            .compose(timer -> created(vertx, client, country, attempts - 1));
+                });
+    }
+}
@@ -4,6 +4,8 @@ import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.junit5.Checkpoint;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
 import org.junit.jupiter.api.Test;
@@ -12,9 +14,16 @@ import us.vanderlugt.sample.vertx.model.RepositoryVerticle;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
 
+import static io.vertx.ext.web.client.predicate.ResponsePredicate.status;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @ExtendWith(VertxExtension.class)
 public class TestMainVerticle {
@@ -28,6 +37,50 @@ public class TestMainVerticle {
                 context.succeeding(id -> context.completeNow()));
     }
 
+    @Test
+    void startScaledWorkerMainVerticle(Vertx vertx, VertxTestContext context) throws Exception {
+        Integer port = randomPort();
+        DeploymentOptions options = getTestDeploymentOptions(port);
+        options.getConfig()
+                .put("http.instances", 3)
+                .put("country.instances", 3)
+                .put("country.worker", true);
+        WebClient client = WebClient.create(vertx);
+        Checkpoint responses = context.checkpoint(6);
+        vertx.deployVerticle(MainVerticle::new, options,
+                context.succeeding(id -> {
+                    for (int request = 0; request < 6; request++) {
+                        client.get(port, "localhost", "/api/country/ZZ")
+                                .expect(status(404))
+                                .send(context.succeeding(response -> responses.flag()));
+                    }
+                }));
+    }
+
+    @Test
+    void startUnknownRole(Vertx vertx, VertxTestContext context) throws Exception {
+        DeploymentOptions options = getTestDeploymentOptions(randomPort());
+        options.getConfig().put("node.role", "database");
+        vertx.deployVerticle(MainVerticle::new, options, context.failing(cause -> {
+            context.verify(() -> assertThat(cause.getMessage(), equalTo("Unknown node.role database, expected all, web or repository")));
+            context.completeNow();
+        }));
+    }
+
+    @Test
+    void startSecondRepositoryNode(Vertx vertx, VertxTestContext context) throws Exception {
+        DeploymentOptions options = getTestDeploymentOptions(randomPort());
+        options.getConfig()
+                .put("node.role", "repository")
+                .put("node.repository.lock-timeout", 100);
+        vertx.deployVerticle(MainVerticle::new, options, context.succeeding(first ->
+                vertx.deployVerticle(MainVerticle::new, options, context.failing(cause -> {
+                    context.verify(() -> assertThat(cause.getMessage(), startsWith("Another repository node is running")));
+                    vertx.undeploy(first, context.succeeding(undeployed ->
+                            vertx.deployVerticle(MainVerticle::new, options, context.succeeding(restarted -> context.completeNow()))));
+                }))));
+    }
+
     @Test
     void startRepositoryVerticle(Vertx vertx, VertxTestContext context) throws Exception {
         vertx.deployVerticle(RepositoryVerticle::new, getTestDeploymentOptions(randomPort()),
@@ -43,6 +96,24 @@ public class TestMainVerticle {
                 }));
     }
 
+    @Test
+    void failedRepositoryStartClosesPool(Vertx vertx, VertxTestContext context) throws Exception {
+        DeploymentOptions options = getTestDeploymentOptions(randomPort());
+        options.getConfig()
+                .put("jdbc.url", "jdbc:h2:mem:failed-start")
+                .put("country.worker-pool.size", 0);
+        DeploymentOptions restart = getTestDeploymentOptions(randomPort());
+        vertx.deployVerticle(RepositoryVerticle::new, options, context.failing(failed -> {
+            context.verify(() -> {
+                try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:failed-start");
+                        Statement statement = connection.createStatement()) {
+                    assertThrows(SQLException.class, () -> statement.executeQuery("SELECT count(*) FROM country"));
+                }
+            });
+            vertx.deployVerticle(RepositoryVerticle::new, restart, context.succeeding(restarted -> context.completeNow()));
+        }));
+    }
+
     public static DeploymentOptions getTestDeploymentOptions(Integer port) throws IOException {
         return new DeploymentOptions()
                 .setConfig(new JsonObject()
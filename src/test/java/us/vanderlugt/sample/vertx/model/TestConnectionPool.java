@@ -0,0 +1,43 @@
+package us.vanderlugt.sample.vertx.model;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.sql.Connection;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestConnectionPool {
+    @ParameterizedTest
+    @ValueSource(strings = {"c3p0", "hikari"})
+    void testStats(String provider) throws Exception {
+        ConnectionPool pool = ConnectionPool.create(new JsonObject()
+                .put("jdbc.provider", provider)
+                .put("jdbc.url", "jdbc:h2:mem:pool-" + provider)
+                .put("jdbc.pool.max-size", 2)
+                .put("jdbc.pool.min-idle", 1));
+        try {
+            try (Connection connection = pool.dataSource().getConnection()) {
+                assertThat(connection.isValid(1), equalTo(true));
+                JsonObject stats = pool.stats();
+                assertThat(stats.getString("provider"), equalTo(provider));
+                assertThat(stats.getInteger("maximumSize"), equalTo(2));
+                assertThat(stats.getLong("acquired"), equalTo(1L));
+                assertThat(stats.getInteger("active"), equalTo(1));
+                assertThat(stats.getInteger("waiting"), equalTo(0));
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    void testUnknownProvider() {
+        assertThrows(IllegalArgumentException.class, () -> ConnectionPool.create(new JsonObject()
+                .put("jdbc.provider", "dbcp")));
+    }
+}
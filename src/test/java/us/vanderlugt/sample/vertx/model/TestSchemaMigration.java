@@ -0,0 +1,68 @@
+package us.vanderlugt.sample.vertx.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestSchemaMigration {
+    private static final String CHANGELOG = "db/changelog-master.yml";
+
+    private Connection connection;
+
+    @BeforeEach
+    void connect() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:migration;DB_CLOSE_DELAY=-1");
+    }
+
+    @AfterEach
+    void drop() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    void testChecksumSkipsUnchangedChangelog() throws Exception {
+        SchemaMigration migration = new SchemaMigration(CHANGELOG, "checksum");
+        assertThat(migration.migrate(connection), equalTo(true));
+        assertThat(migration.migrate(connection), equalTo(false));
+        try (Statement statement = connection.createStatement();
+                ResultSet result = statement.executeQuery("SELECT count(*) FROM country")) {
+            result.next();
+            assertThat(result.getInt(1), equalTo(0));
+        }
+    }
+
+    @Test
+    void testChecksumMigratesChangedChangelog() throws Exception {
+        SchemaMigration migration = new SchemaMigration(CHANGELOG, "checksum");
+        migration.migrate(connection);
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE schema_checksum SET checksum = 'stale'");
+        }
+        assertThat(migration.migrate(connection), equalTo(true));
+        assertThat(migration.migrate(connection), equalTo(false));
+    }
+
+    @Test
+    void testUpdateAlwaysMigrates() throws Exception {
+        SchemaMigration migration = new SchemaMigration(CHANGELOG, "update");
+        assertThat(migration.migrate(connection), equalTo(true));
+        assertThat(migration.migrate(connection), equalTo(true));
+    }
+
+    @Test
+    void testUnknownMode() {
+        assertThrows(IllegalArgumentException.class, () -> new SchemaMigration(CHANGELOG, "skip"));
+    }
+}
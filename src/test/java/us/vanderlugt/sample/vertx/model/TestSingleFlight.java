@@ -0,0 +1,75 @@
+package us.vanderlugt.sample.vertx.model;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TestSingleFlight {
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final List<Promise<String>> pending = new ArrayList<>();
+
+    private Future<String> call() {
+        calls.incrementAndGet();
+        Promise<String> promise = Promise.promise();
+        pending.add(promise);
+        return promise.future();
+    }
+
+    @Test
+    void testConcurrentCallsShareResult() {
+        final Future<String> first = flight.execute("BM", this::call);
+        final Future<String> second = flight.execute("BM", this::call);
+        assertThat(calls.get(), equalTo(1));
+        pending.get(0).complete("Bermuda");
+        assertThat(first.result(), equalTo("Bermuda"));
+        assertThat(second.result(), equalTo("Bermuda"));
+        assertThat(flight.calls(), equalTo(1L));
+        assertThat(flight.coalesced(), equalTo(1L));
+    }
+
+    @Test
+    void testDifferentKeysCallSeparately() {
+        flight.execute("BM", this::call);
+        flight.execute("AR", this::call);
+        assertThat(calls.get(), equalTo(2));
+        assertThat(flight.coalesced(), equalTo(0L));
+    }
+
+    @Test
+    void testCallAfterCompletionCallsAgain() {
+        flight.execute("BM", this::call);
+        pending.get(0).complete("Bermuda");
+        Future<String> later = flight.execute("BM", this::call);
+        assertThat(calls.get(), equalTo(2));
+        assertThat(later.isComplete(), equalTo(false));
+    }
+
+    @Test
+    void testFailureIsShared() {
+        Future<String> first = flight.execute("BM", this::call);
+        Future<String> second = flight.execute("BM", this::call);
+        pending.get(0).fail("query failed");
+        assertThat(first.cause().getMessage(), equalTo("query failed"));
+        assertThat(second.cause().getMessage(), equalTo("query failed"));
+    }
+
+    @Test
+    void testThrowingCallFailsAndReleasesKey() {
+        Future<String> failed = flight.execute("BM", () -> {
+            throw new IllegalStateException("no connection");
+        });
+        assertThat(failed.cause().getMessage(), equalTo("no connection"));
+        Future<String> later = flight.execute("BM", this::call);
+        assertThat(calls.get(), equalTo(1));
+        pending.get(0).complete("Bermuda");
+        assertThat(later.result(), equalTo("Bermuda"));
+    }
+}
@@ -0,0 +1,66 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TestCountryCache {
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void testReadThrough() {
+        CountryCache cache = new CountryCache(10, 1000, clock::get);
+        assertThat(cache.get("BM"), nullValue());
+        assertThat(cache.putIfUnchanged(new Country("BM", "Bermuda", "Hamilton"), cache.version()), equalTo(true));
+        assertThat(cache.get("BM").getName(), equalTo("Bermuda"));
+        assertThat(cache.stats().getLong("hits"), equalTo(1L));
+        assertThat(cache.stats().getLong("misses"), equalTo(1L));
+    }
+
+    @Test
+    void testExpiry() {
+        CountryCache cache = new CountryCache(10, 1000, clock::get);
+        cache.put(new Country("BM", "Bermuda", "Hamilton"));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertThat(cache.get("BM").getId(), equalTo("BM"));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(cache.get("BM"), nullValue());
+        assertThat(cache.stats().getLong("evictions"), equalTo(1L));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        CountryCache cache = new CountryCache(2, 1000, clock::get);
+        cache.put(new Country("AR", "Argentina", "Buenos Aires"));
+        cache.put(new Country("BT", "Bhutan", "Thimphu"));
+        cache.get("AR");
+        cache.put(new Country("HR", "Croatia", "Zagreb"));
+        assertThat(cache.get("BT"), nullValue());
+        assertThat(cache.get("AR").getId(), equalTo("AR"));
+        assertThat(cache.get("HR").getId(), equalTo("HR"));
+        assertThat(cache.stats().getInteger("size"), equalTo(2));
+        assertThat(cache.stats().getLong("evictions"), equalTo(1L));
+    }
+
+    @Test
+    void testStaleReadIsNotCached() {
+        CountryCache cache = new CountryCache(10, 1000, clock::get);
+        long version = cache.version();
+        cache.invalidate("BM");
+        assertThat(cache.putIfUnchanged(new Country("BM", "Bermuda", "Hamilton"), version), equalTo(false));
+        assertThat(cache.get("BM"), nullValue());
+    }
+
+    @Test
+    void testDisabled() {
+        CountryCache cache = new CountryCache(0, 1000, clock::get);
+        cache.put(new Country("BM", "Bermuda", "Hamilton"));
+        assertThat(cache.isEnabled(), equalTo(false));
+        assertThat(cache.get("BM"), nullValue());
+    }
+}
@@ -0,0 +1,39 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class TestCountryCodec {
+    @Test
+    void testLocalTransformKeepsReference() {
+        Country country = new Country("BM", "Bermuda", "Hamilton");
+        assertThat(new CountryCodec().transform(country), sameInstance(country));
+    }
+
+    @Test
+    void testWireRoundTrip() {
+        CountryCodec codec = new CountryCodec();
+        Country country = new Country("CO", "Colombia", null);
+        Buffer buffer = Buffer.buffer().appendString("prefix");
+        codec.encodeToWire(buffer, country);
+        assertThat(codec.decodeFromWire(6, buffer), equalTo(country));
+    }
+
+    @Test
+    void testListWireRoundTrip() {
+        CountryListCodec codec = new CountryListCodec();
+        List<Country> countries = Arrays.asList(
+                new Country("BM", "Bermuda", "Hamilton"),
+                new Country("CI", "Cote d'Ivoire", "Yamoussoukro"));
+        Buffer buffer = Buffer.buffer();
+        codec.encodeToWire(buffer, countries);
+        assertThat(codec.decodeFromWire(0, buffer), equalTo(countries));
+    }
+}
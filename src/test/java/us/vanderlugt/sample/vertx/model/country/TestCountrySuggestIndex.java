@@ -0,0 +1,73 @@
+package us.vanderlugt.sample.vertx.model.country;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TestCountrySuggestIndex {
+    @Test
+    void testNamesBeforeCapitals() {
+        CountrySuggestIndex index = new CountrySuggestIndex();
+        index.load(List.of(
+                new Country("MT", "Malta", "Valletta"),
+                new Country("GQ", "Equatorial Guinea", "Malabo"),
+                new Country("MW", "Malawi", "Lilongwe"),
+                new Country("ML", "Mali", "Bamako")));
+        assertThat(ids(index.suggest("mal", 10)), equalTo(List.of("MW", "ML", "MT", "GQ")));
+        assertThat(ids(index.suggest("MALA", 10)), equalTo(List.of("MW", "GQ")));
+        assertThat(ids(index.suggest("mal", 2)), equalTo(List.of("MW", "ML")));
+        assertThat(index.suggest("x", 10), empty());
+    }
+
+    @Test
+    void testIncrementalUpdates() {
+        CountrySuggestIndex index = new CountrySuggestIndex();
+        index.load(List.of(new Country("MT", "Malta", "Valletta")));
+        index.put(new Country("MV", "Maldives", "Male"));
+        assertThat(ids(index.suggest("mal", 10)), equalTo(List.of("MV", "MT")));
+
+        index.put(new Country("MV", "Republic of Maldives", "Male"));
+        assertThat(ids(index.suggest("mal", 10)), equalTo(List.of("MT", "MV")));
+        assertThat(ids(index.suggest("rep", 10)), equalTo(List.of("MV")));
+
+        index.remove("MT");
+        index.remove("ZZ");
+        assertThat(ids(index.suggest("mal", 10)), equalTo(List.of("MV")));
+    }
+
+    @Test
+    void testReReadsRejectedAfterLaterWrite() {
+        CountrySuggestIndex index = new CountrySuggestIndex();
+        long first = index.put(new Country("MV", "Republic of Maldives", "Male"));
+        long second = index.put(new Country("MV", "Maldives", "Male"));
+        assertThat(index.putIfUnchanged(new Country("MV", "Republic of Maldives", "Male"), first), equalTo(false));
+        assertThat(index.putIfUnchanged(new Country("MV", "Republic of Maldives", "Male"), second), equalTo(true));
+        assertThat(ids(index.suggest("rep", 10)), equalTo(List.of("MV")));
+        assertThat(index.suggest("mald", 10), empty());
+
+        long removed = index.remove("MV");
+        assertThat(index.removeIfUnchanged("MV", second), equalTo(false));
+        assertThat(index.putIfUnchanged(new Country("MV", "Maldives", "Male"), removed), equalTo(true));
+        assertThat(ids(index.suggest("mald", 10)), equalTo(List.of("MV")));
+        assertThat(index.removeIfUnchanged("MV", removed), equalTo(true));
+        assertThat(index.suggest("mald", 10), empty());
+    }
+
+    @Test
+    void testMatchingBothNameAndCapitalOnce() {
+        CountrySuggestIndex index = new CountrySuggestIndex();
+        index.load(List.of(new Country("MX", "Mexico", "Mexico City")));
+        assertThat(ids(index.suggest("mex", 10)), equalTo(List.of("MX")));
+    }
+
+    private static List<String> ids(List<Country> countries) {
+        return countries.stream()
+                .map(Country::getId)
+                .collect(Collectors.toList());
+    }
+}
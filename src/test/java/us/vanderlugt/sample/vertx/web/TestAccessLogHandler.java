@@ -0,0 +1,123 @@
+package us.vanderlugt.sample.vertx.web;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+@ExtendWith(VertxExtension.class)
+public class TestAccessLogHandler {
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private Logger logger;
+
+    @BeforeEach
+    void attach() {
+        logger = (Logger) LoggerFactory.getLogger("us.vanderlugt.sample.vertx.web.AccessLog");
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void detach() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    void testErrorsLoggedWhenSampledOut(Vertx vertx, VertxTestContext context) {
+        AccessLogHandler handler = new AccessLogHandler(0.0, 16, registry);
+        served(vertx, handler)
+                .compose(client -> get(client, "/ok")
+                        .compose(ok -> get(client, "/missing"))
+                        .compose(missing -> get(client, "/fail")))
+                .setHandler(context.succeeding(done -> {
+                    handler.drain();
+                    context.verify(() -> {
+                        assertThat(levels(), equalTo(List.of(Level.WARN, Level.ERROR)));
+                        assertThat(appender.list.get(0).getFormattedMessage(), containsString("\"GET /missing HTTP/1.1\" 404"));
+                        assertThat(appender.list.get(1).getFormattedMessage(), containsString("\"GET /fail HTTP/1.1\" 500"));
+                    });
+                    context.completeNow();
+                }));
+    }
+
+    @Test
+    void testAllLoggedWhenNotSampled(Vertx vertx, VertxTestContext context) {
+        AccessLogHandler handler = new AccessLogHandler(1.0, 16, registry);
+        served(vertx, handler)
+                .compose(client -> get(client, "/ok")
+                        .compose(ok -> get(client, "/ok")))
+                .setHandler(context.succeeding(done -> {
+                    handler.drain();
+                    context.verify(() -> {
+                        assertThat(levels(), equalTo(List.of(Level.INFO, Level.INFO)));
+                        assertThat(appender.list.get(0).getFormattedMessage(), containsString("\"GET /ok HTTP/1.1\" 200 2"));
+                    });
+                    context.completeNow();
+                }));
+    }
+
+    @Test
+    void testFullBufferDrops(Vertx vertx, VertxTestContext context) {
+        AccessLogHandler handler = new AccessLogHandler(1.0, 2, registry);
+        served(vertx, handler)
+                .compose(client -> get(client, "/ok")
+                        .compose(ok -> get(client, "/missing"))
+                        .compose(missing -> get(client, "/fail")))
+                .setHandler(context.succeeding(done -> {
+                    handler.drain();
+                    context.verify(() -> {
+                        assertThat(levels(), equalTo(List.of(Level.INFO, Level.WARN)));
+                        assertThat(registry.counter("http.access-log.dropped").count(), equalTo(1.0));
+                    });
+                    context.completeNow();
+                }));
+    }
+
+    private Future<WebClient> served(Vertx vertx, AccessLogHandler handler) {
+        Router router = Router.router(vertx);
+        router.route().handler(handler);
+        router.get("/ok").handler(routing -> routing.response().end("ok"));
+        router.get("/fail").handler(routing -> routing.response().setStatusCode(500).end());
+        return Future.<HttpServer>future(promise -> vertx.createHttpServer()
+                .requestHandler(router)
+                .listen(0, promise))
+                .map(server -> WebClient.create(vertx, new WebClientOptions()
+                        .setDefaultHost("localhost")
+                        .setDefaultPort(server.actualPort())));
+    }
+
+    private Future<HttpResponse<Buffer>> get(WebClient client, String uri) {
+        return Future.future(promise -> client.get(uri).send(promise));
+    }
+
+    private List<Level> levels() {
+        return appender.list.stream()
+                .map(ILoggingEvent::getLevel)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,55 @@
+package us.vanderlugt.sample.vertx.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TestAimdLimit {
+    private static final long THRESHOLD = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    void testRejectsOverLimit() {
+        AimdLimit limit = new AimdLimit(2, 1, 10, THRESHOLD, 0.5);
+        assertThat(limit.tryAcquire(), equalTo(true));
+        assertThat(limit.tryAcquire(), equalTo(true));
+        assertThat(limit.tryAcquire(), equalTo(false));
+        assertThat(limit.getInFlight(), equalTo(2));
+    }
+
+    @Test
+    void testAdditiveIncrease() {
+        AimdLimit limit = new AimdLimit(2, 1, 3, THRESHOLD, 0.5);
+        limit.tryAcquire();
+        limit.release(FAST, false);
+        assertThat(limit.getLimit(), equalTo(3));
+        limit.tryAcquire();
+        limit.tryAcquire();
+        limit.release(FAST, false);
+        assertThat(limit.getLimit(), equalTo(3));
+    }
+
+    @Test
+    void testIncreaseOnlyWhenLimitInUse() {
+        AimdLimit limit = new AimdLimit(10, 1, 20, THRESHOLD, 0.5);
+        limit.tryAcquire();
+        limit.release(FAST, false);
+        assertThat(limit.getLimit(), equalTo(10));
+    }
+
+    @Test
+    void testMultiplicativeDecrease() {
+        AimdLimit limit = new AimdLimit(8, 3, 10, THRESHOLD, 0.5);
+        limit.tryAcquire();
+        limit.release(SLOW, false);
+        assertThat(limit.getLimit(), equalTo(4));
+        limit.tryAcquire();
+        limit.release(FAST, true);
+        assertThat(limit.getLimit(), equalTo(3));
+        assertThat(limit.getInFlight(), equalTo(0));
+    }
+}
@@ -0,0 +1,64 @@
+package us.vanderlugt.sample.vertx.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TestRingBuffer {
+    @Test
+    void testCapacityRoundsUpToPowerOfTwo() {
+        assertThat(new RingBuffer<String>(1).capacity(), equalTo(2));
+        assertThat(new RingBuffer<String>(5).capacity(), equalTo(8));
+        assertThat(new RingBuffer<String>(8).capacity(), equalTo(8));
+    }
+
+    @Test
+    void testOfferFailsWhenFull() {
+        RingBuffer<String> buffer = new RingBuffer<>(2);
+        assertThat(buffer.offer("BM"), equalTo(true));
+        assertThat(buffer.offer("AR"), equalTo(true));
+        assertThat(buffer.offer("US"), equalTo(false));
+        assertThat(buffer.poll(), equalTo("BM"));
+        assertThat(buffer.offer("US"), equalTo(true));
+        assertThat(buffer.poll(), equalTo("AR"));
+        assertThat(buffer.poll(), equalTo("US"));
+        assertThat(buffer.poll(), nullValue());
+    }
+
+    @Test
+    void testConcurrentProducers() throws Exception {
+        RingBuffer<Integer> buffer = new RingBuffer<>(1024);
+        List<Thread> producers = new ArrayList<>();
+        for (int producer = 0; producer < 4; producer++) {
+            int first = producer * 250;
+            Thread thread = new Thread(() -> {
+                for (int value = first; value < first + 250; value++) {
+                    while (!buffer.offer(value)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        boolean[] seen = new boolean[1000];
+        int count = 0;
+        Integer value = buffer.poll();
+        while (value != null) {
+            assertThat(seen[value], equalTo(false));
+            seen[value] = true;
+            count++;
+            value = buffer.poll();
+        }
+        assertThat(count, equalTo(1000));
+    }
+}
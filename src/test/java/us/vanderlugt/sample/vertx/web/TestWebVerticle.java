@@ -1,6 +1,8 @@
 package us.vanderlugt.sample.vertx.web;
 
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpVersion;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.ext.web.codec.BodyCodec;
@@ -31,4 +33,51 @@ public class TestWebVerticle {
                     }));
         }));
     }
+
+    @Test
+    void testHttp2ClearText(Vertx vertx, VertxTestContext context) throws Exception {
+        Integer port = randomPort();
+        vertx.deployVerticle(WebVerticle::new, getTestDeploymentOptions(port), context.succeeding(id -> {
+            WebClient client = WebClient.create(vertx, new WebClientOptions()
+                    .setDefaultHost("localhost")
+                    .setDefaultPort(port)
+                    .setProtocolVersion(HttpVersion.HTTP_2)
+                    .setHttp2ClearTextUpgrade(false));
+            client.get("/")
+                    .as(BodyCodec.string())
+                    .send(context.succeeding(response -> {
+                        context.verify(() -> assertThat(response.version(), equalTo(HttpVersion.HTTP_2)));
+                        context.completeNow();
+                    }));
+        }));
+    }
+
+    @Test
+    void testHttp2Alpn(Vertx vertx, VertxTestContext context) throws Exception {
+        Integer port = randomPort();
+        DeploymentOptions options = getTestDeploymentOptions(port);
+        options.getConfig()
+                .put("http.http2", true)
+                .put("http.tls", true)
+                .put("http.tls.keystore", "tls/localhost.p12")
+                .put("http.tls.keystore-password", "changeit");
+        vertx.deployVerticle(WebVerticle::new, options, context.succeeding(id -> {
+            WebClient client = WebClient.create(vertx, new WebClientOptions()
+                    .setDefaultHost("localhost")
+                    .setDefaultPort(port)
+                    .setSsl(true)
+                    .setTrustAll(true)
+                    .setUseAlpn(true)
+                    .setProtocolVersion(HttpVersion.HTTP_2));
+            client.get("/")
+                    .as(BodyCodec.string())
+                    .send(context.succeeding(response -> {
+                        context.verify(() -> {
+                            assertThat(response.version(), equalTo(HttpVersion.HTTP_2));
+                            assertThat(response.body(), equalTo("Welcome!"));
+                        });
+                        context.completeNow();
+                    }));
+        }));
+    }
 }
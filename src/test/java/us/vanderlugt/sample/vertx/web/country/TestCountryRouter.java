@@ -1,12 +1,19 @@
 package us.vanderlugt.sample.vertx.web.country;
 
 import io.vertx.core.*;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.NetClientOptions;
+import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.ext.web.codec.BodyCodec;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import liquibase.Liquibase;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
 import org.hamcrest.MatcherAssert;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,16 +22,30 @@ import us.vanderlugt.sample.vertx.MainVerticle;
 import us.vanderlugt.sample.vertx.TestMainVerticle;
 import us.vanderlugt.sample.vertx.model.country.Country;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import static io.vertx.core.Future.future;
 import static io.vertx.core.http.HttpMethod.*;
 import static io.vertx.ext.web.client.predicate.ResponsePredicate.status;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
 import static us.vanderlugt.sample.vertx.TestMainVerticle.getTestDeploymentOptions;
 import static us.vanderlugt.sample.vertx.web.HttpStatus.*;
 
@@ -126,6 +147,69 @@ public class TestCountryRouter {
                                 })));
     }
 
+    @Test
+    void testCreateCountryMalformedBody(Vertx vertx, VertxTestContext context) throws Exception {
+        deployMain(vertx, context,
+                id -> client.request(POST, "/api/country")
+                        .expect(status(BAD_REQUEST.getCode()))
+                        .as(BodyCodec.jsonObject())
+                        .sendBuffer(Buffer.buffer("{\"id\": \"BM\","),
+                                context.succeeding(response -> {
+                                    context.verify(() -> {
+                                        assertThat(response.body().getString("message"),
+                                                equalTo("Request body must be a country"));
+                                    });
+                                    context.completeNow();
+                                })));
+    }
+
+    @Test
+    void testCreateCountryBatch(Vertx vertx, VertxTestContext context) throws Exception {
+        deployMain(vertx, context,
+                id -> createCountry(context, new Country("FR", "France", "Paris"))
+                        .compose(v -> future((Promise<JsonArray> promise) ->
+                                client.request(POST, "/api/country/batch")
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.jsonArray())
+                                        .sendJson(List.of(
+                                                new Country("DE", "Germany", "Berlin"),
+                                                new Country("FR", "Frankreich", "Paris"),
+                                                new Country("DE", "Deutschland", "Berlin"),
+                                                new Country("IT", "Italy", "Rome")),
+                                                context.succeeding(response -> promise.complete(response.body())))))
+                        .setHandler(context.succeeding(results -> {
+                            context.verify(() -> assertThat(results.stream()
+                                            .map(JsonObject.class::cast)
+                                            .map(result -> result.getString("id") + "=" + result.getInteger("status"))
+                                            .collect(Collectors.toList()),
+                                    equalTo(List.of("DE=201", "FR=409", "DE=409", "IT=201"))));
+                            client.request(GET, "/api/country/DE")
+                                    .expect(status(OK.getCode()))
+                                    .as(BodyCodec.json(Country.class))
+                                    .send(context.succeeding(response -> {
+                                        context.verify(() -> assertThat(response.body().getName(), equalTo("Germany")));
+                                        context.completeNow();
+                                    }));
+                        })));
+    }
+
+    @Test
+    void testCreateCountryBatchInvalid(Vertx vertx, VertxTestContext context) throws Exception {
+        deployMain(vertx, context,
+                id -> client.request(POST, "/api/country/batch")
+                        .expect(status(BAD_REQUEST.getCode()))
+                        .as(BodyCodec.jsonObject())
+                        .sendJson(List.of(new Country("ES", "Spain", "Madrid"), new Country("PT", "Portugal", "")),
+                                context.succeeding(response -> client.request(GET, "/api/country/ES")
+                                        .expect(status(NOT_FOUND.getCode()))
+                                        .as(BodyCodec.none())
+                                        .send(context.succeeding(none -> {
+                                            context.verify(() -> assertThat(response.body().getString("message"),
+                                                    equalTo("Country at index 1: Country capital must be between 1 and 100 characters long")));
+                                            context.completeNow();
+                                        })))));
+    }
+
     @Test
     void testGetCountry(Vertx vertx, VertxTestContext context) throws Exception {
         deployMain(vertx, context,
@@ -172,6 +256,329 @@ public class TestCountryRouter {
                                         })))));
     }
 
+    @Test
+    void testSearchCountriesNotModified(Vertx vertx, VertxTestContext context) throws Exception {
+        deployMain(vertx, context,
+                id -> createCountry(context, new Country("NP", "Nepal", "Kathmandu"))
+                        .compose(v -> future((Promise<String> promise) ->
+                                client.request(GET, "/api/country")
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.jsonArray())
+                                        .send(context.succeeding(response -> promise.complete(response.getHeader("ETag"))))))
+                        .compose(etag -> future((Promise<String> promise) ->
+                                client.request(GET, "/api/country")
+                                        .putHeader("If-None-Match", etag)
+                                        .expect(status(NOT_MODIFIED.getCode()))
+                                        .as(BodyCodec.none())
+                                        .send(context.succeeding(response -> {
+                                            context.verify(() -> assertThat(response.getHeader("ETag"), equalTo(etag)));
+                                            promise.complete(etag);
+                                        }))))
+                        .compose(etag -> createCountry(context, new Country("LA", "Laos", "Vientiane")).map(etag))
+                        .setHandler(context.succeeding(etag ->
+                                client.request(GET, "/api/country")
+                                        .putHeader("If-None-Match", etag)
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.jsonArray())
+                                        .send(context.succeeding(response -> {
+                                            context.verify(() -> assertThat(response.getHeader("ETag"), not(equalTo(etag))));
+                                            context.completeNow();
+                                        })))));
+    }
+
+    @Test
+    void testSearchCountriesCompressed(Vertx vertx, VertxTestContext context) throws Exception {
+        DeploymentOptions options = getTestDeploymentOptions(port);
+        options.getConfig()
+                .put("jdbc.url", "jdbc:h2:mem:compressed")
+                .put("http.compression.min-size", 64);
+        vertx.deployVerticle(MainVerticle::new, options, context.succeeding(
+                id -> createCountry(context, new Country("KE", "Kenya", "Nairobi"))
+                        .compose(v -> future((Promise<Void> promise) ->
+                                client.request(GET, "/api/country")
+                                        .putHeader("Accept-Encoding", "gzip")
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.jsonArray())
+                                        .send(context.succeeding(response -> {
+                                            context.verify(() -> {
+                                                assertThat(response.getHeader("Content-Encoding"), equalTo("identity"));
+                                                assertThat(ids(response.body()), equalTo(List.of("KE")));
+                                            });
+                                            promise.complete();
+                                        }))))
+                        .compose(v -> createCountry(context, new Country("UG", "Uganda", "Kampala")))
+                        .compose(v -> future((Promise<Buffer> promise) ->
+                                client.request(GET, "/api/country")
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.buffer())
+                                        .send(context.succeeding(response -> promise.complete(response.body())))))
+                        .compose(identity -> future((Promise<String> promise) ->
+                                client.request(GET, "/api/country")
+                                        .putHeader("Accept-Encoding", "gzip, deflate")
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.buffer())
+                                        .send(context.succeeding(response -> {
+                                            context.verify(() -> {
+                                                assertThat(identity.length(), greaterThan(64));
+                                                assertThat(response.getHeader("Content-Encoding"), equalTo("gzip"));
+                                                assertThat(response.getHeader("ETag"), startsWith("W/"));
+                                                assertThat(gunzip(response.body()), equalTo(identity));
+                                            });
+                                            promise.complete(response.getHeader("ETag"));
+                                        }))))
+                        .compose(etag -> future((Promise<Void> promise) ->
+                                client.request(GET, "/api/country")
+                                        .putHeader("Accept-Encoding", "gzip")
+                                        .putHeader("If-None-Match", etag)
+                                        .expect(status(NOT_MODIFIED.getCode()))
+                                        .as(BodyCodec.none())
+                                        .send(context.succeeding(response -> promise.complete()))))
+                        .setHandler(context.succeeding(v ->
+                                client.request(GET, "/api/country/KE")
+                                        .putHeader("Accept-Encoding", "gzip")
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.json(Country.class))
+                                        .send(context.succeeding(response -> {
+                                            context.verify(() -> {
+                                                assertThat(response.getHeader("Content-Encoding"), equalTo("identity"));
+                                                assertThat(response.getHeader("Vary"), equalTo("Accept-Encoding"));
+                                                assertThat(response.body().getName(), equalTo("Kenya"));
+                                            });
+                                            context.completeNow();
+                                        }))))));
+    }
+
+    @Test
+    void testSearchCountriesPaged(Vertx vertx, VertxTestContext context) throws Exception {
+        deployMain(vertx, context,
+                id -> createCountry(context, new Country("CL", "Chile", "Santiago"))
+                        .compose(v -> createCountry(context, new Country("CN", "china", "Beijing")))
+                        .compose(v -> createCountry(context, new Country("CO", "Colombia", "Bogota")))
+                        .compose(v -> future((Promise<List<String>> promise) ->
+                                client.request(GET, "/api/country")
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.jsonArray())
+                                        .send(context.succeeding(response -> promise.complete(response.body().stream()
+                                                .map(JsonObject.class::cast)
+                                                .map(obj -> obj.getString("id"))
+                                                .collect(Collectors.toList()))))))
+                        .setHandler(context.succeeding(expected ->
+                                searchPages(context, "/api/country?limit=2", new ArrayList<>())
+                                        .setHandler(context.succeeding(actual -> {
+                                            context.verify(() -> assertThat(actual, equalTo(expected)));
+                                            context.completeNow();
+                                        })))));
+    }
+
+    @Test
+    void testSearchCountriesByPrefix(Vertx vertx, VertxTestContext context) throws Exception {
+        deployMain(vertx, context,
+                id -> createCountry(context, new Country("GN", "Guinea", "Conakry"))
+                        .compose(v -> createCountry(context, new Country("GW", "Guinea-Bissau", "Bissau")))
+                        .compose(v -> createCountry(context, new Country("GQ", "Equatorial Guinea", "Malabo")))
+                        .compose(v -> future((Promise<Void> promise) ->
+                                client.request(GET, "/api/country?name=guin")
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.jsonArray())
+                                        .send(context.succeeding(response -> {
+                                            context.verify(() -> assertThat(ids(response.body()), equalTo(List.of("GN", "GW"))));
+                                            promise.complete();
+                                        }))))
+                        .compose(v -> future((Promise<Void> promise) ->
+                                client.request(GET, "/api/country?capital=MALA")
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.jsonArray())
+                                        .send(context.succeeding(response -> {
+                                            context.verify(() -> assertThat(ids(response.body()), equalTo(List.of("GQ"))));
+                                            promise.complete();
+                                        }))))
+                        .compose(v -> future((Promise<Void> promise) ->
+                                client.request(GET, "/api/country?name=guin&limit=1")
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.jsonArray())
+                                        .send(context.succeeding(response -> {
+                                            context.verify(() -> {
+                                                assertThat(ids(response.body()), equalTo(List.of("GN")));
+                                                assertThat(response.getHeader("Link"), containsString("&name=guin>"));
+                                            });
+                                            promise.complete();
+                                        }))))
+                        .setHandler(context.succeeding(v ->
+                                client.request(GET, "/api/country?name=%25")
+                                        .expect(status(NO_CONTENT.getCode()))
+                                        .as(BodyCodec.none())
+                                        .send(context.succeeding(response -> context.completeNow())))));
+    }
+
+    @Test
+    void testSuggestCountries(Vertx vertx, VertxTestContext context) throws Exception {
+        deployMain(vertx, context,
+                id -> createCountry(context, new Country("MG", "Madagascar", "Antananarivo"))
+                        .compose(v -> createCountry(context, new Country("MW", "Malawi", "Lilongwe")))
+                        .compose(v -> future((Promise<Void> promise) ->
+                                client.request(GET, "/api/country/suggest?q=madag")
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.jsonArray())
+                                        .send(context.succeeding(response -> {
+                                            context.verify(() -> assertThat(ids(response.body()), equalTo(List.of("MG"))));
+                                            promise.complete();
+                                        }))))
+                        .compose(v -> future((Promise<Void> promise) ->
+                                client.request(GET, "/api/country/suggest?q=LILON&limit=5")
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.jsonArray())
+                                        .send(context.succeeding(response -> {
+                                            context.verify(() -> assertThat(ids(response.body()), equalTo(List.of("MW"))));
+                                            promise.complete();
+                                        }))))
+                        .compose(v -> deleteCountry(context, "MW"))
+                        .compose(v -> future((Promise<Void> promise) ->
+                                client.request(GET, "/api/country/suggest?q=lilon")
+                                        .expect(status(NO_CONTENT.getCode()))
+                                        .as(BodyCodec.none())
+                                        .send(context.succeeding(response -> promise.complete()))))
+                        .setHandler(context.succeeding(v ->
+                                client.request(GET, "/api/country/suggest")
+                                        .expect(status(BAD_REQUEST.getCode()))
+                                        .as(BodyCodec.none())
+                                        .send(context.succeeding(response -> context.completeNow())))));
+    }
+
+    @Test
+    void testSearchCountriesInvalidCursor(Vertx vertx, VertxTestContext context) throws Exception {
+        deployMain(vertx, context,
+                id -> client.request(GET, "/api/country?limit=0")
+                        .expect(status(BAD_REQUEST.getCode()))
+                        .as(BodyCodec.none())
+                        .send(context.succeeding(response -> client.request(GET, "/api/country?after=%25%25")
+                                .expect(status(BAD_REQUEST.getCode()))
+                                .as(BodyCodec.none())
+                                .send(context.succeeding(response2 -> context.completeNow())))));
+    }
+
+    @Test
+    void testExportCountries(Vertx vertx, VertxTestContext context) throws Exception {
+        DeploymentOptions options = getTestDeploymentOptions(port);
+        options.getConfig()
+                .put("country.export.chunk-size", 1)
+                .put("country.export.window", 1);
+        vertx.deployVerticle(MainVerticle::new, options, context.succeeding(
+                id -> createCountry(context, new Country("PE", "Peru", "Lima"))
+                        .compose(v -> createCountry(context, new Country("PY", "Paraguay", "Asuncion")))
+                        .compose(v -> future((Promise<JsonArray> promise) ->
+                                client.request(GET, "/api/country")
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.jsonArray())
+                                        .send(context.succeeding(response -> promise.complete(response.body())))))
+                        .setHandler(context.succeeding(expected ->
+                                client.request(GET, "/api/country/export")
+                                        .expect(status(OK.getCode()))
+                                        .as(BodyCodec.string())
+                                        .send(context.succeeding(response -> {
+                                            context.verify(() -> {
+                                                assertThat(response.getHeader("Content-Type"),
+                                                        equalTo("application/x-ndjson; charset=utf-8"));
+                                                JsonArray actual = new JsonArray();
+                                                response.body().lines()
+                                                        .map(JsonObject::new)
+                                                        .forEach(actual::add);
+                                                assertThat(actual, equalTo(expected));
+                                            });
+                                            context.completeNow();
+                                        }))))));
+    }
+
+    @Test
+    void testExportCountriesFailsBeforeData(Vertx vertx, VertxTestContext context) throws Exception {
+        DeploymentOptions options = getTestDeploymentOptions(port);
+        options.getConfig()
+                .put("jdbc.read.url", "jdbc:h2:mem:unmigrated;DB_CLOSE_DELAY=-1");
+        vertx.deployVerticle(MainVerticle::new, options, context.succeeding(
+                id -> client.request(GET, "/api/country/export")
+                        .expect(status(INTERNAL_SERVER_ERROR.getCode()))
+                        .as(BodyCodec.none())
+                        .send(context.succeeding(response -> {
+                            context.verify(() -> assertThat(response.getHeader("Transfer-Encoding"), nullValue()));
+                            context.completeNow();
+                        }))));
+    }
+
+    @Test
+    void testExportCountriesClosedWhenClientStopsReading(Vertx vertx, VertxTestContext context) throws Exception {
+        String url = replica("jdbc:h2:mem:stalled;DB_CLOSE_DELAY=-1");
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            String padding = "x".repeat(90);
+            for (char first = 'A'; first <= 'Z'; first++) {
+                for (char second = 'A'; second <= 'Z'; second++) {
+                    String id = "" + first + second;
+                    statement.executeUpdate("MERGE INTO country (id, name, capital) VALUES ('" + id + "', '" + padding + id + "', '" +
+                            padding + id + "')");
+                }
+            }
+        }
+        DeploymentOptions options = getTestDeploymentOptions(port);
+        options.getConfig()
+                .put("jdbc.read.url", url)
+                .put("http.send-buffer-size", 4096)
+                .put("country.export.window", 1)
+                .put("country.export.ack-timeout", 200);
+        vertx.deployVerticle(MainVerticle::new, options, context.succeeding(id -> vertx
+                .createNetClient(new NetClientOptions().setReceiveBufferSize(1024))
+                .connect(port, "localhost", context.succeeding(stalled -> {
+                    Buffer response = Buffer.buffer();
+                    stalled.handler(response::appendBuffer);
+                    stalled.closeHandler(closed -> {
+                        context.verify(() -> {
+                            assertThat(response.toString(), startsWith("HTTP/1.1 200 "));
+                            assertThat(response.toString(), not(endsWith("0\r\n\r\n")));
+                        });
+                        context.completeNow();
+                    });
+                    stalled.write("GET /api/country/export HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                    stalled.pause();
+                    vertx.setTimer(2000, timer -> stalled.resume());
+                }))));
+    }
+
+    @Test
+    void testAdmissionControl(Vertx vertx, VertxTestContext context) throws Exception {
+        DeploymentOptions options = getTestDeploymentOptions(port);
+        options.getConfig()
+                .put("http.instances", 1)
+                .put("http.admission.enabled", true)
+                .put("http.admission.initial-limit", 1)
+                .put("http.admission.max-limit", 1)
+                .put("http.admission.retry-after", 2);
+        vertx.deployVerticle(MainVerticle::new, options, context.succeeding(id -> vertx.createNetClient()
+                .connect(port, "localhost", context.succeeding(slow -> {
+                    Buffer response = Buffer.buffer();
+                    slow.handler(received -> {
+                        response.appendBuffer(received);
+                        if (response.toString().contains("\r\n\r\n")) {
+                            slow.handler(null);
+                            context.verify(() -> assertThat(response.toString(), startsWith("HTTP/1.1 200 ")));
+                            client.request(GET, "/api/country/SH")
+                                    .expect(status(OK.getCode()))
+                                    .send(context.succeeding(admitted -> context.completeNow()));
+                        }
+                    });
+                    slow.write("POST /api/country/batch HTTP/1.1\r\n" +
+                            "Host: localhost\r\n" +
+                            "Content-Type: application/json\r\n" +
+                            "Transfer-Encoding: chunked\r\n\r\n" +
+                            chunk("[{\"id\": \"SH\", "));
+                    vertx.setTimer(200, timer -> client.request(POST, "/api/country/batch")
+                            .sendJson(new JsonArray(), context.succeeding(rejected -> {
+                                context.verify(() -> {
+                                    assertThat(rejected.statusCode(), equalTo(SERVICE_UNAVAILABLE.getCode()));
+                                    assertThat(rejected.getHeader("Retry-After"), equalTo("2"));
+                                });
+                                slow.write(chunk("\"name\": \"Saint Helena\", \"capital\": \"Jamestown\"}]") + chunk(""));
+                            })));
+                }))));
+    }
+
     @Test
     void testSearchCountriesNotFound(Vertx vertx, VertxTestContext context) throws Exception {
         deployMain(vertx, context,
@@ -222,6 +629,16 @@ public class TestCountryRouter {
                                         })))));
     }
 
+    @Test
+    void testUpdateCountryNotFound(Vertx vertx, VertxTestContext context) throws Exception {
+        deployMain(vertx, context,
+                id -> client.request(PUT, "/api/country/ZZ")
+                        .expect(status(NOT_FOUND.getCode()))
+                        .as(BodyCodec.none())
+                        .sendJson(new Country(null, "Nowhere", "Nothing"),
+                                context.succeeding(response -> context.completeNow())));
+    }
+
     @Test
     void testDeleteCountry(Vertx vertx, VertxTestContext context) throws Exception {
         deployMain(vertx, context,
@@ -262,6 +679,148 @@ public class TestCountryRouter {
                         .send(context.succeeding(response -> context.completeNow())));
     }
 
+    @Test
+    void testCreateCountriesBatched(Vertx vertx, VertxTestContext context) throws Exception {
+        DeploymentOptions options = getTestDeploymentOptions(port);
+        options.getConfig()
+                .put("country.insert.batch.window", 200)
+                .put("country.insert.batch.max-size", 3);
+        List<Country> countries = Arrays.asList(
+                new Country("KZ", "Kazakhstan", "Nur-Sultan"),
+                new Country("UZ", "Uzbekistan", "Tashkent"),
+                new Country("UZ", "Uzbekistan", "Tashkent"),
+                new Country("TM", "Turkmenistan", "Ashgabat"));
+        vertx.deployVerticle(MainVerticle::new, options, context.succeeding(id -> {
+            List<Future<HttpResponse<Buffer>>> created = countries.stream()
+                    .map(country -> Future.<HttpResponse<Buffer>>future(promise -> client.request(POST, "/api/country")
+                            .sendJson(country, promise)))
+                    .collect(Collectors.toList());
+            CompositeFuture.all(new ArrayList<>(created)).setHandler(context.succeeding(all -> {
+                List<Integer> statuses = all.<HttpResponse<Buffer>>list().stream()
+                        .map(HttpResponse::statusCode)
+                        .sorted()
+                        .collect(Collectors.toList());
+                context.verify(() -> assertThat(statuses, equalTo(Arrays.asList(201, 201, 201, 409))));
+                client.request(GET, "/metrics")
+                        .as(BodyCodec.string())
+                        .send(context.succeeding(response -> {
+                            context.verify(() -> {
+                                assertThat(response.body(), containsString("country_insert_batch_size_sum 4.0"));
+                                assertThat(response.body(), containsString(
+                                        "repository_queries_seconds_count{method=\"createCountries\",outcome=\"success\",} 2.0"));
+                                assertThat(response.body(), not(containsString("method=\"createCountry\"")));
+                            });
+                            context.completeNow();
+                        }));
+            }));
+        }));
+    }
+
+    @Test
+    void testReadReplica(Vertx vertx, VertxTestContext context) throws Exception {
+        String replicaUrl = replica("jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1");
+        DeploymentOptions options = getTestDeploymentOptions(port);
+        options.getConfig()
+                .put("country.cache.size", 0)
+                .put("jdbc.read.url", replicaUrl)
+                .put("jdbc.read.read-your-writes", 5000);
+        vertx.deployVerticle(MainVerticle::new, options, context.succeeding(id -> client.request(GET, "/api/country/RP")
+                .expect(status(OK.getCode()))
+                .send(context.succeeding(fromReplica -> client.request(POST, "/api/country")
+                        .expect(status(CREATED.getCode()))
+                        .sendJson(new Country("NR", "Nauru", "Yaren"), context.succeeding(created -> {
+                            String cookie = created.cookies().get(0).split(";")[0];
+                            context.verify(() -> assertThat(cookie, startsWith("read-primary-until=")));
+                            client.request(GET, "/api/country/NR")
+                                    .expect(status(NOT_FOUND.getCode()))
+                                    .send(context.succeeding(notReplicated -> client.request(GET, "/api/country/NR")
+                                            .putHeader("Cookie", cookie)
+                                            .expect(status(OK.getCode()))
+                                            .send(context.succeeding(fromPrimary -> context.completeNow()))));
+                        }))))));
+    }
+
+    @Test
+    void testReadReplicaCachesFullList(Vertx vertx, VertxTestContext context) throws Exception {
+        DeploymentOptions options = getTestDeploymentOptions(port);
+        options.getConfig()
+                .put("jdbc.url", "jdbc:h2:mem:cached-primary")
+                .put("jdbc.read.url", replica("jdbc:h2:mem:cached-replica;DB_CLOSE_DELAY=-1"));
+        vertx.deployVerticle(MainVerticle::new, options, context.succeeding(
+                id -> createCountry(context, new Country("TV", "Tuvalu", "Funafuti"))
+                        .compose(v -> fullList(context))
+                        .compose(first -> searchQueries(context)
+                                .compose(queries -> fullList(context)
+                                        .compose(second -> searchQueries(context)
+                                                .map(after -> {
+                                                    context.verify(() -> {
+                                                        assertThat(ids(first), equalTo(List.of("TV")));
+                                                        assertThat(second, equalTo(first));
+                                                        assertThat(after, equalTo(queries));
+                                                    });
+                                                    return after;
+                                                }))))
+                        .setHandler(context.succeeding(v -> context.completeNow()))));
+    }
+
+    private Future<JsonArray> fullList(VertxTestContext context) {
+        return future(promise -> client.request(GET, "/api/country")
+                .expect(status(OK.getCode()))
+                .as(BodyCodec.jsonArray())
+                .send(context.succeeding(response -> promise.complete(response.body()))));
+    }
+
+    /**
+     * The number of full and filtered searches the repositories ran, from the {@code repository.queries} timer.
+     */
+    private Future<String> searchQueries(VertxTestContext context) {
+        return future(promise -> client.request(GET, "/metrics")
+                .expect(status(OK.getCode()))
+                .as(BodyCodec.string())
+                .send(context.succeeding(response -> promise.complete(response.body().lines()
+                        .filter(line -> line.startsWith("repository_queries_seconds_count{method=\"searchCountries\""))
+                        .findFirst()
+                        .orElse("")))));
+    }
+
+    @Test
+    void testMetrics(Vertx vertx, VertxTestContext context) throws Exception {
+        deployMain(vertx, context,
+                id -> client.request(GET, "/api/country/ZZ")
+                        .expect(status(NOT_FOUND.getCode()))
+                        .send(context.succeeding(notFound -> client.request(GET, "/metrics")
+                                .expect(status(OK.getCode()))
+                                .as(BodyCodec.string())
+                                .send(context.succeeding(response -> {
+                                    context.verify(() -> {
+                                        String metrics = response.body();
+                                        assertThat(metrics, containsString(
+                                                "http_server_requests_seconds_count{method=\"GET\",route=\"/api/country/:id\",status=\"404\",} 1.0"));
+                                        assertThat(metrics, containsString(
+                                                "eventbus_requests_seconds_count{address=\"us.vanderlugt.country.get\",outcome=\"success\",} 1.0"));
+                                        assertThat(metrics, containsString(
+                                                "repository_queries_seconds_count{method=\"getCountry\",outcome=\"success\",} 1.0"));
+                                        assertThat(metrics, containsString("jdbc_pool_connections{pool=\"c3p0\",role=\"primary\",state=\"active\",}"));
+                                    });
+                                    context.completeNow();
+                                })))));
+    }
+
+    /**
+     * Migrates a replica database and seeds it with a country the primary does not have.
+     */
+    private static String replica(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url)) {
+            new Liquibase("db/changelog-master.yml", new ClassLoaderResourceAccessor(), new JdbcConnection(connection))
+                    .update("");
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("MERGE INTO country (id, name, capital) VALUES ('RP', 'Replica', 'Lagos')");
+            }
+        }
+        return url;
+    }
+
     private void deployMain(Vertx vertx, VertxTestContext context, Handler<String> handler) throws Exception {
         vertx.deployVerticle(MainVerticle::new, getTestDeploymentOptions(port), context.succeeding(handler));
     }
@@ -275,6 +834,43 @@ public class TestCountryRouter {
         });
     }
 
+    private Future<List<String>> searchPages(VertxTestContext context, String uri, List<String> ids) {
+        return future((Promise<HttpResponse<JsonArray>> promise) -> client.request(GET, uri)
+                .expect(status(OK.getCode()))
+                .as(BodyCodec.jsonArray())
+                .send(context.succeeding(promise::complete)))
+                .compose(response -> {
+                    response.body().stream()
+                            .map(JsonObject.class::cast)
+                            .forEach(obj -> ids.add(obj.getString("id")));
+                    String link = response.getHeader("Link");
+                    if (link == null) {
+                        return Future.succeededFuture(ids);
+                    }
+                    return searchPages(context, link.substring(1, link.indexOf('>')), ids);
+                });
+    }
+
+    private static Buffer gunzip(Buffer compressed) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed.getBytes()))) {
+            return Buffer.buffer(gzip.readAllBytes());
+        }
+    }
+
+    /**
+     * An HTTP/1.1 chunk of a chunked request body, the empty chunk ends the body.
+     */
+    private static String chunk(String data) {
+        return Integer.toHexString(data.getBytes(StandardCharsets.UTF_8).length) + "\r\n" + data + "\r\n";
+    }
+
+    private static List<String> ids(JsonArray countries) {
+        return countries.stream()
+                .map(JsonObject.class::cast)
+                .map(obj -> obj.getString("id"))
+                .collect(Collectors.toList());
+    }
+
     private Future<Object> deleteCountry(VertxTestContext context, String countryId) {
         return future(
                 promise -> client.request(DELETE, "/api/country/" + countryId)